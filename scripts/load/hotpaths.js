@@ -0,0 +1,200 @@
+/*
+ * Test de charge des chemins chauds du backend : prédiction, envoi de message avec
+ * diffusion WebSocket, compteur de messages non lus.
+ *
+ * Lancer le backend en local (base en mémoire, script de modèle factice), puis :
+ *   TOKEN=... DEVIS_IDS=1,2,3 npm run load:hotpaths
+ * Comparer deux campagnes (par exemple deux versions) :
+ *   node scripts/load/hotpaths.js compare load-reports/v1.json load-reports/v2.json
+ *
+ * Variables : BASE_URL, TOKEN, DEVIS_IDS, SENDER_ID, RECIPIENT_ID, USER_ID,
+ * DURATION_S (par scénario), CONCURRENCY, LABEL, REPORT_DIR.
+ *
+ * Ce script mesure les chemins de bout en bout (HTTP, base, WebSocket). Il ne remplace
+ * pas des microbenchmarks JMH de KeywordMatcher, PredictionResponse.read ou
+ * PredictionFeatures.parse : ceux-ci demandent un build Java (Maven ou Gradle) que ce
+ * dépôt n'a pas encore, et restent à ajouter avec lui.
+ */
+const fs = require('fs');
+const path = require('path');
+
+const config = {
+  baseUrl: process.env.BASE_URL || 'http://localhost:8080',
+  token: process.env.TOKEN || '',
+  devisIds: (process.env.DEVIS_IDS || '1').split(',').map(id => Number(id.trim())),
+  senderId: Number(process.env.SENDER_ID || 1),
+  recipientId: Number(process.env.RECIPIENT_ID || 2),
+  userId: Number(process.env.USER_ID || 2),
+  durationS: Number(process.env.DURATION_S || 30),
+  concurrency: Number(process.env.CONCURRENCY || 16),
+  label: process.env.LABEL || new Date().toISOString().replace(/[:.]/g, '-'),
+  reportDir: process.env.REPORT_DIR || 'load-reports'
+};
+
+// Dépendances chargées à la demande : la comparaison de rapports n'en a pas besoin
+const createHttp = () => require('axios').create({
+  baseURL: config.baseUrl,
+  headers: config.token ? { Authorization: `Bearer ${config.token}` } : {},
+  validateStatus: () => true
+});
+
+const percentile = (sorted, p) =>
+  sorted.length === 0 ? 0 : sorted[Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)];
+
+const summarize = (latencies, errors, elapsedMs) => {
+  const sorted = [...latencies].sort((a, b) => a - b);
+  const total = sorted.reduce((sum, value) => sum + value, 0);
+  const round = value => Math.round(value * 100) / 100;
+  return {
+    requests: sorted.length + errors,
+    errors,
+    throughputPerSec: round(sorted.length / (elapsedMs / 1000)),
+    latencyMs: {
+      mean: round(sorted.length ? total / sorted.length : 0),
+      p50: round(percentile(sorted, 0.5)),
+      p90: round(percentile(sorted, 0.9)),
+      p99: round(percentile(sorted, 0.99)),
+      max: round(sorted.length ? sorted[sorted.length - 1] : 0)
+    }
+  };
+};
+
+// Boucle fermée : CONCURRENCY appels en parallèle pendant DURATION_S secondes
+const run = async (name, call) => {
+  const latencies = [];
+  let errors = 0;
+  let sequence = 0;
+  const start = Date.now();
+  const deadline = start + config.durationS * 1000;
+
+  const worker = async () => {
+    while (Date.now() < deadline) {
+      const n = sequence++;
+      const t0 = process.hrtime.bigint();
+      try {
+        const response = await call(n);
+        const ms = Number(process.hrtime.bigint() - t0) / 1e6;
+        if (response.status >= 200 && response.status < 300) {
+          latencies.push(ms);
+        } else {
+          errors++;
+        }
+      } catch (error) {
+        errors++;
+      }
+    }
+  };
+
+  await Promise.all(Array.from({ length: config.concurrency }, worker));
+  const summary = summarize(latencies, errors, Date.now() - start);
+  console.log(`${name}: ${summary.throughputPerSec} req/s, p50 ${summary.latencyMs.p50} ms, ` +
+    `p99 ${summary.latencyMs.p99} ms, ${errors} erreurs`);
+  return summary;
+};
+
+// Abonné STOMP aux salons des devis : délai entre l'envoi HTTP et la réception diffusée
+const connectFanOut = (sentAt, received) => new Promise((resolve, reject) => {
+  const SockJS = require('sockjs-client');
+  const { Client } = require('@stomp/stompjs');
+  const client = new Client({
+    webSocketFactory: () => new SockJS(`${config.baseUrl}/ws`),
+    connectHeaders: config.token ? { Authorization: `Bearer ${config.token}` } : {},
+    reconnectDelay: 0,
+    onConnect: () => {
+      config.devisIds.forEach(devisId => {
+        client.subscribe(`/topic/messages/devis/${devisId}`, frame => {
+          const now = process.hrtime.bigint();
+          const payload = JSON.parse(frame.body);
+          // Plusieurs messages peuvent arriver groupés dans un tableau
+          (Array.isArray(payload) ? payload : [payload]).forEach(message => {
+            const marker = /\[load:(\d+)\]/.exec(message.content || '');
+            if (marker && sentAt.has(marker[1])) {
+              received.push(Number(now - sentAt.get(marker[1])) / 1e6);
+              sentAt.delete(marker[1]);
+            }
+          });
+        });
+      });
+      resolve(client);
+    },
+    onStompError: frame => reject(new Error(frame.headers.message)),
+    onWebSocketError: () => reject(new Error('Connexion WebSocket impossible'))
+  });
+  client.activate();
+});
+
+const devisFor = n => config.devisIds[n % config.devisIds.length];
+
+const loadTest = async () => {
+  const http = createHttp();
+  const report = { label: config.label, startedAt: new Date().toISOString(), config: { ...config, token: undefined }, scenarios: {} };
+
+  report.scenarios.predictionsAnalyze = await run('POST /api/predictions/analyze', n =>
+    http.post('/api/predictions/analyze', { devisId: devisFor(n) }));
+
+  const sentAt = new Map();
+  const fanOut = [];
+  const stomp = await connectFanOut(sentAt, fanOut);
+  const fanOutStart = Date.now();
+  report.scenarios.messagesSend = await run('POST /api/messages', async n => {
+    sentAt.set(String(n), process.hrtime.bigint());
+    const response = await http.post('/api/messages', {
+      devisId: devisFor(n),
+      content: `Message de charge [load:${n}]`,
+      senderId: config.senderId,
+      senderName: 'Test de charge',
+      recipientId: config.recipientId
+    });
+    // Message refusé : rien à attendre côté WebSocket
+    if (response.status >= 300) {
+      sentAt.delete(String(n));
+    }
+    return response;
+  });
+  // Derniers lots en vol
+  await new Promise(resolve => setTimeout(resolve, 1000));
+  await stomp.deactivate();
+  report.scenarios.messagesFanOut = summarize(fanOut, sentAt.size, Date.now() - fanOutStart);
+  console.log(`diffusion WebSocket: p50 ${report.scenarios.messagesFanOut.latencyMs.p50} ms, ` +
+    `p99 ${report.scenarios.messagesFanOut.latencyMs.p99} ms, ${sentAt.size} non reçus`);
+
+  report.scenarios.unreadCount = await run('GET /api/messages/unread/count', () =>
+    http.get('/api/messages/unread/count', { params: { userId: config.userId } }));
+
+  fs.mkdirSync(config.reportDir, { recursive: true });
+  const file = path.join(config.reportDir, `${config.label}.json`);
+  fs.writeFileSync(file, JSON.stringify(report, null, 2));
+  console.log(`Rapport écrit dans ${file}`);
+};
+
+// Écart relatif entre deux rapports, scénario par scénario
+const compare = (baseFile, candidateFile) => {
+  const base = JSON.parse(fs.readFileSync(baseFile, 'utf8'));
+  const candidate = JSON.parse(fs.readFileSync(candidateFile, 'utf8'));
+  const delta = (a, b) => (a ? `${(((b - a) / a) * 100).toFixed(1)}%` : 'n/a');
+
+  const rows = Object.keys(base.scenarios)
+    .filter(name => candidate.scenarios[name])
+    .map(name => {
+      const a = base.scenarios[name];
+      const b = candidate.scenarios[name];
+      return {
+        scenario: name,
+        'req/s': `${a.throughputPerSec} -> ${b.throughputPerSec} (${delta(a.throughputPerSec, b.throughputPerSec)})`,
+        'p50 ms': `${a.latencyMs.p50} -> ${b.latencyMs.p50} (${delta(a.latencyMs.p50, b.latencyMs.p50)})`,
+        'p99 ms': `${a.latencyMs.p99} -> ${b.latencyMs.p99} (${delta(a.latencyMs.p99, b.latencyMs.p99)})`,
+        erreurs: `${a.errors} -> ${b.errors}`
+      };
+    });
+  console.log(`${base.label} -> ${candidate.label}`);
+  console.table(rows);
+};
+
+if (process.argv[2] === 'compare') {
+  compare(process.argv[3], process.argv[4]);
+} else {
+  loadTest().catch(error => {
+    console.error('Test de charge interrompu:', error.message);
+    process.exit(1);
+  });
+}
@@ -0,0 +1,57 @@
+package com.Sofimed.DTO;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Vue plate et immuable d'une commande, chargée directement par projection JPQL
+ * (aucune entité client, commercial ou devis n'est hydratée).
+ */
+public record CommandeDTO(
+    Long id,
+    Long clientId,
+    Long commercialId,
+    Long devisId,
+    BigDecimal totalHT,
+    BigDecimal tauxTVA,
+    String status,
+    LocalDate dateLivraisonSouhaitee,
+    String notes
+) {
+
+    public static final String CSV_HEADER =
+        "id,clientId,commercialId,devisId,totalHT,tauxTVA,totalTTC,status,dateLivraisonSouhaitee,notes";
+
+    public BigDecimal getTotalTTC() {
+        if (totalHT == null) {
+            return null;
+        }
+        BigDecimal taux = tauxTVA != null ? tauxTVA : BigDecimal.ZERO;
+        return totalHT.add(totalHT.multiply(taux).movePointLeft(2));
+    }
+
+    public String toCsvLine() {
+        return String.join(",",
+            csv(id), csv(clientId), csv(commercialId), csv(devisId),
+            csv(totalHT), csv(tauxTVA), csv(getTotalTTC()),
+            csv(status), csv(dateLivraisonSouhaitee), csv(notes));
+    }
+
+    private static final String FORMULA_PREFIXES = "=+-@\t\r";
+
+    private static String csv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        // Montants sans notation scientifique
+        String text = value instanceof BigDecimal amount ? amount.toPlainString() : value.toString();
+        // Texte libre commençant comme une formule : neutralisé pour les tableurs
+        if (value instanceof CharSequence && !text.isEmpty() && FORMULA_PREFIXES.indexOf(text.charAt(0)) >= 0) {
+            text = "'" + text;
+        }
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+}
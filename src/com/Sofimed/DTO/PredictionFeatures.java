@@ -0,0 +1,196 @@
+package com.Sofimed.DTO;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Entrées du modèle commercial sous forme typée : les champs numériques sont lus une
+ * seule fois depuis la requête dans un tableau de doubles, puis sérialisés tels quels
+ * vers le worker Python, sans repasser par une Map d'objets.
+ */
+@JsonSerialize(using = PredictionFeatures.Serializer.class)
+public final class PredictionFeatures {
+
+    // Ordre des valeurs dans le vecteur
+    public static final List<String> NUMERIC_FIELDS = List.of(
+        "totalCommandes", "totalDevis", "totalMontantCommandes",
+        "nb_produits_devis", "nb_produits_deja_achetes",
+        "temps_dans_application_min", "temps_reponse_messagerie_min",
+        "delai_traitement_devis_hrs", "taux_conversion",
+        "moyenne_montant_commande", "ratio_produits_achetes"
+    );
+
+    private static final List<String> CONVERSATION_STATS = List.of(
+        "messageCount", "sentimentScore", "negotiationIndicators", "objectionIndicators"
+    );
+
+    private static final int MAX_MESSAGES_LENGTH = 10000;
+
+    private final Long devisId;
+    private final double[] values;
+
+    private String messages;
+    private boolean hasConversationStats;
+    private int messageCount;
+    private double sentimentScore;
+    private int negotiationIndicators;
+    private int objectionIndicators;
+
+    private PredictionFeatures(Long devisId, double[] values) {
+        this.devisId = devisId;
+        this.values = values;
+    }
+
+    /**
+     * Lit et valide les entrées de la requête ; renvoie {@code null} et remplit
+     * {@code errors} si un champ est absent ou invalide. Un champ absent prend la
+     * valeur de {@code defaults} (même ordre que {@link #NUMERIC_FIELDS}) s'il est fourni.
+     */
+    public static PredictionFeatures parse(Map<String, Object> requestData, double[] defaults,
+                                           Map<String, String> errors) {
+        double[] values = new double[NUMERIC_FIELDS.size()];
+
+        // Vérification des champs obligatoires
+        for (int i = 0; i < values.length; i++) {
+            String field = NUMERIC_FIELDS.get(i);
+            Object raw = requestData.get(field);
+            if (raw == null && defaults != null) {
+                values[i] = defaults[i];
+            } else if (raw == null) {
+                errors.put(field, "Ce champ est obligatoire");
+            } else {
+                values[i] = number(field, raw, errors);
+            }
+        }
+
+        PredictionFeatures features = new PredictionFeatures(parseDevisId(requestData.get("devisId")), values);
+
+        // Vérification du champ messages (optionnel mais recommandé)
+        Object messages = requestData.get("messages");
+        if (messages != null) {
+            String text = messages.toString();
+            if (text.length() > MAX_MESSAGES_LENGTH) {
+                errors.put("messages", "Le texte des messages ne doit pas dépasser 10000 caractères");
+            } else {
+                features.messages = text;
+            }
+        }
+
+        // Statistiques fournies par le client : conservées si la conversation n'est pas disponible,
+        // remplacées par celles du serveur sinon (applyConversation)
+        if (CONVERSATION_STATS.stream().anyMatch(requestData::containsKey)) {
+            features.hasConversationStats = true;
+            features.messageCount = (int) optionalNumber(requestData, "messageCount", errors);
+            features.sentimentScore = optionalNumber(requestData, "sentimentScore", errors);
+            features.negotiationIndicators = (int) optionalNumber(requestData, "negotiationIndicators", errors);
+            features.objectionIndicators = (int) optionalNumber(requestData, "objectionIndicators", errors);
+        }
+
+        return errors.isEmpty() ? features : null;
+    }
+
+    private static double optionalNumber(Map<String, Object> requestData, String field, Map<String, String> errors) {
+        Object raw = requestData.get(field);
+        return raw == null ? 0 : number(field, raw, errors);
+    }
+
+    private static double number(String field, Object raw, Map<String, String> errors) {
+        if (raw instanceof Number number) {
+            return number.doubleValue();
+        }
+        try {
+            return Double.parseDouble(raw.toString().trim());
+        } catch (NumberFormatException e) {
+            errors.put(field, "Doit être un nombre valide");
+            return 0;
+        }
+    }
+
+    public static Long parseDevisId(Object devisIdValue) {
+        if (devisIdValue == null) {
+            return null;
+        }
+        if (devisIdValue instanceof Number number) {
+            return number.longValue();
+        }
+        try {
+            return Long.parseLong(devisIdValue.toString().trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Ajoute le texte récent et les statistiques issus de /processed-conversation.
+     */
+    public void applyConversation(Map<String, Object> conversationData) {
+        if (conversationData == null) {
+            return;
+        }
+
+        String rawText = (String) conversationData.get("rawText");
+        if (rawText != null && !rawText.isEmpty()) {
+            this.messages = rawText;
+        }
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> stats = (Map<String, Object>) conversationData.get("stats");
+        if (stats != null) {
+            this.hasConversationStats = true;
+            this.messageCount = intStat(stats, "messageCount");
+            this.sentimentScore = ((Number) stats.getOrDefault("sentimentScore", 0)).doubleValue();
+            this.negotiationIndicators = intStat(stats, "negotiationIndicators");
+            this.objectionIndicators = intStat(stats, "objectionIndicators");
+        }
+    }
+
+    private static int intStat(Map<String, Object> stats, String key) {
+        return ((Number) stats.getOrDefault(key, 0)).intValue();
+    }
+
+    public Long getDevisId() {
+        return devisId;
+    }
+
+    // Valeurs numériques retenues, pour l'affichage du rapport
+    public Map<String, Object> inputs() {
+        Map<String, Object> inputs = new LinkedHashMap<>();
+        for (int i = 0; i < values.length; i++) {
+            inputs.put(NUMERIC_FIELDS.get(i), values[i]);
+        }
+        return inputs;
+    }
+
+    public static class Serializer extends StdSerializer<PredictionFeatures> {
+
+        public Serializer() {
+            super(PredictionFeatures.class);
+        }
+
+        @Override
+        public void serialize(PredictionFeatures features, JsonGenerator gen, SerializerProvider provider)
+                throws IOException {
+            gen.writeStartObject();
+            for (int i = 0; i < features.values.length; i++) {
+                gen.writeNumberField(NUMERIC_FIELDS.get(i), features.values[i]);
+            }
+            if (features.messages != null) {
+                gen.writeStringField("messages", features.messages);
+            }
+            if (features.hasConversationStats) {
+                gen.writeNumberField("messageCount", features.messageCount);
+                gen.writeNumberField("sentimentScore", features.sentimentScore);
+                gen.writeNumberField("negotiationIndicators", features.negotiationIndicators);
+                gen.writeNumberField("objectionIndicators", features.objectionIndicators);
+            }
+            gen.writeEndObject();
+        }
+    }
+}
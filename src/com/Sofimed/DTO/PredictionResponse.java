@@ -0,0 +1,147 @@
+package com.Sofimed.DTO;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Résultat du modèle commercial, lu directement depuis le flux JSON du worker Python.
+ *
+ * Contrat de sortie : {@code {"prediction": n, "interest_score": n, "sentiment": "...",
+ * "negotiation_score": n, "objection_score": n, "detected_keywords": {"cat": ["mot", ...]}}},
+ * ou {@code {"error": "..."}} en cas d'échec. Les champs inconnus sont ignorés.
+ */
+public class PredictionResponse {
+
+    private double prediction = 0;
+    private double confidence = 0.8;
+    private String sentiment = "neutral";
+    private final Map<String, Double> scores = new HashMap<>();
+    private final Map<String, List<String>> keywords = new HashMap<>();
+    private String error;
+
+    private PredictionResponse() {
+        scores.put("negotiation", 0.0);
+        scores.put("objection", 0.0);
+    }
+
+    /**
+     * Lit un objet résultat ; le parseur doit être positionné sur {@code START_OBJECT}
+     * et se retrouve sur le {@code END_OBJECT} correspondant.
+     */
+    public static PredictionResponse read(JsonParser parser) throws IOException {
+        expect(parser, JsonToken.START_OBJECT);
+        PredictionResponse response = new PredictionResponse();
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+
+            if (value == JsonToken.VALUE_NULL) {
+                continue;
+            }
+            switch (field) {
+                case "prediction" -> response.prediction = parser.getValueAsDouble();
+                case "interest_score" -> response.confidence = parser.getValueAsDouble();
+                case "sentiment" -> response.sentiment = parser.getValueAsString("neutral");
+                case "negotiation_score" -> response.scores.put("negotiation", parser.getValueAsDouble());
+                case "objection_score" -> response.scores.put("objection", parser.getValueAsDouble());
+                case "detected_keywords" -> readKeywords(parser, response.keywords);
+                case "error" -> response.error = parser.getValueAsString();
+                default -> parser.skipChildren();
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Lit une réponse groupée {@code {"results": [ {...}, ... ]}} dans l'ordre des entrées.
+     */
+    public static List<PredictionResponse> readBatch(JsonParser parser) throws IOException {
+        expect(parser, JsonToken.START_OBJECT);
+        List<PredictionResponse> results = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+
+            if ("results".equals(field) && parser.currentToken() == JsonToken.START_ARRAY) {
+                results = new ArrayList<>();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    results.add(read(parser));
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        if (results == null) {
+            throw new IOException("Réponse groupée du modèle invalide");
+        }
+        return results;
+    }
+
+    private static void readKeywords(JsonParser parser, Map<String, List<String>> keywords) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String category = parser.getCurrentName();
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                continue;
+            }
+            List<String> words = new ArrayList<>();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (parser.currentToken() == JsonToken.VALUE_STRING) {
+                    words.add(parser.getText());
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (!words.isEmpty()) {
+                keywords.put(category, words);
+            }
+        }
+    }
+
+    private static void expect(JsonParser parser, JsonToken token) throws IOException {
+        if (parser.currentToken() != token) {
+            throw new IOException("Format de sortie Python invalide: " + parser.currentToken());
+        }
+    }
+
+    public boolean isError() {
+        return error != null;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("prediction", this.prediction);
+        response.put("confidence", this.confidence);
+        response.put("sentiment", this.sentiment);
+        response.put("scores", this.scores);
+
+        if (!this.keywords.isEmpty()) {
+            response.put("keywords", this.keywords);
+        }
+
+        // Ajout des facteurs clés basés sur l'analyse
+        List<String> keyFactors = new ArrayList<>();
+        if (this.prediction > 70) keyFactors.add("Fort potentiel d'acceptation");
+        if (this.scores.get("negotiation") > 0.5) keyFactors.add("Client en négociation");
+        if (this.scores.get("objection") > 0.3) keyFactors.add("Objections à traiter");
+        if (this.sentiment.equals("positive")) keyFactors.add("Sentiment positif");
+
+        response.put("keyFactors", keyFactors);
+
+        return response;
+    }
+}
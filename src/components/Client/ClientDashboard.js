@@ -173,9 +173,14 @@ const ClientDashboard = () => {
       },
       onConnect: () => {
         // S'abonner au topic des messages pour ce client
-        client.subscribe(`/topic/messages/${userData.id}`, () => {
+        client.subscribe(`/topic/messages/user/${userData.id}`, () => {
           fetchUnreadMessages(userData.id);
         });
+        // Compteur de non lus poussé par le serveur à chaque changement
+        client.subscribe(`/topic/messages/unread/${userData.id}`, (frame) => {
+          const data = JSON.parse(frame.body);
+          setUnreadMessages(data.total || 0);
+        });
       },
       onStompError: (frame) => {
         console.error('Erreur STOMP:', frame);
@@ -1,6 +1,7 @@
 import React, { useState, useEffect, useRef } from 'react';
 import { useLocation, useNavigate } from 'react-router-dom';
 import notificationService from '../../services/notificationService';
+import { useAnalyzePrices } from '../../hooks/useAnalyzePrices';
 import './CommercialDevis.css';
 import { FileText, MessageCircle, User, Search, Filter, Download, Eye, AlertCircle, Loader, Home, Users, ChartBar, History, Settings, HelpCircle, LogOut, Bell, Mail, Phone, Send, CheckCircle } from 'lucide-react';
 import axios from 'axios';
@@ -1809,6 +1810,18 @@ const updateAllCartItems = async (devisId, updateData) => {
 
 export default CommercialDevis;
 
+// Créer une copie propre des messages sans références circulaires
+const toCleanMessages = (data) => (Array.isArray(data) ? data.map(msg => ({
+  id: msg.id,
+  content: msg.content,
+  timestamp: msg.timestamp,
+  senderId: msg.senderId,
+  senderName: msg.senderName,
+  recipientId: msg.recipientId,
+  read: msg.read,
+  devisId: msg.devisId
+})) : []);
+
 // Définition du composant ChatModal
 const ChatModal = ({ devis, onClose }) => {
   const navigate = useNavigate();
@@ -1818,6 +1831,7 @@ const ChatModal = ({ devis, onClose }) => {
   const [error, setError] = useState('');
   const [sending, setSending] = useState(false);
   const messagesEndRef = useRef(null);
+  const lastMessageIdRef = useRef(null);
   const userData = JSON.parse(localStorage.getItem('user'));
   const [commercialId, setCommercialId] = useState(null);
   const [commercialName, setCommercialName] = useState('');
@@ -1828,7 +1842,7 @@ const ChatModal = ({ devis, onClose }) => {
   }, [devis.id]);
 
   useEffect(() => {
-    const interval = setInterval(fetchMessages, 10000); // Rafraîchir toutes les 10 secondes
+    const interval = setInterval(fetchNewMessages, 10000); // Rafraîchir toutes les 10 secondes
     return () => clearInterval(interval);
   }, [devis.id]);
 
@@ -1874,22 +1888,11 @@ const ChatModal = ({ devis, onClose }) => {
       console.log('Réponse API messages:', response.data);
       
       // S'assurer que messages est toujours un tableau et nettoyer les données circulaires
-      const messagesData = Array.isArray(response.data) ? response.data.map(msg => {
-        // Créer une copie propre du message sans références circulaires
-        return {
-          id: msg.id,
-          content: msg.content,
-          timestamp: msg.timestamp,
-          senderId: msg.senderId,
-          senderName: msg.senderName,
-          recipientId: msg.recipientId,
-          read: msg.read,
-          devisId: msg.devisId
-        };
-      }) : [];
+      const messagesData = toCleanMessages(response.data);
       
       console.log('Messages formatés:', messagesData);
       setMessages(messagesData);
+      lastMessageIdRef.current = messagesData.length > 0 ? messagesData[messagesData.length - 1].id : null;
       
       // Marquer les messages comme lus
       await axios.put(`http://localhost:8080/api/messages/devis/${devis.id}/read`, {}, {
@@ -1909,6 +1912,42 @@ const ChatModal = ({ devis, onClose }) => {
     }
   };
 
+  // Rafraîchissement périodique : seuls les messages postérieurs au dernier reçu sont demandés
+  const fetchNewMessages = async () => {
+    if (lastMessageIdRef.current === null) {
+      return fetchMessages();
+    }
+    try {
+      const token = localStorage.getItem('token');
+      const response = await axios.get(`http://localhost:8080/api/messages/devis/${devis.id}`, {
+        params: { after: lastMessageIdRef.current, limit: 100 },
+        headers: {
+          'Authorization': `Bearer ${token}`
+        }
+      });
+      
+      const newMessages = toCleanMessages(response.data);
+      if (newMessages.length === 0) {
+        return;
+      }
+      
+      lastMessageIdRef.current = newMessages[newMessages.length - 1].id;
+      setMessages(prevMessages => {
+        const knownIds = new Set(prevMessages.map(msg => msg.id));
+        return [...prevMessages, ...newMessages.filter(msg => !knownIds.has(msg.id))];
+      });
+      
+      // Marquer les messages comme lus
+      await axios.put(`http://localhost:8080/api/messages/devis/${devis.id}/read`, {}, {
+        headers: {
+          'Authorization': `Bearer ${token}`
+        }
+      });
+    } catch (err) {
+      console.error('Erreur lors du rafraîchissement des messages:', err);
+    }
+  };
+
   const handleSendMessage = async () => {
     if (!newMessage.trim() || sending) return;
     
@@ -2132,6 +2171,8 @@ const PrixModal = ({ devis, onClose, onUpdate }) => {
   const [remises, setRemises] = useState({});
   const [purchaseCounts, setPurchaseCounts] = useState({});
   const [isPredicting, setIsPredicting] = useState(false);
+  const [marketResults, setMarketResults] = useState({});
+  const { analyzeDevisPrices, loading: analyzingMarket, error: marketError } = useAnalyzePrices();
 
   const styles = {};
 
@@ -2538,65 +2579,10 @@ const analyzeProbability = async () => {
       }
     }, 1000);
 
-    // Récupération des données client
-    const clientStats = await axios.get(
-      `http://localhost:8080/api/client-stats/${clientInfo.id}`,
-      { headers: { 'Authorization': `Bearer ${token}` } }
-    );
-
-    const clientUserResponse = await axios.get(
-      `http://localhost:8080/api/clients/${clientInfo.id}/user-id`,
-      { headers: { 'Authorization': `Bearer ${token}` } }
-    );
-    
-    const clientUserId = clientUserResponse.data;
-
-    const sessionResponse = await axios.get(
-      `http://localhost:8080/api/sessions/totalDuration/${clientUserId}`,
-      { headers: { 'Authorization': `Bearer ${token}` } }
-    );
-    
-    const tempsPasseMinutes = Math.round(sessionResponse.data / (1000 * 60));
-
-    let tempsReponseMessagerie = 2;
-    try {
-      const messageResponse = await axios.get(
-        `http://localhost:8080/api/messages/temps-reponse-moyen-client/${devis.id}?clientId=${clientInfo.id}`,
-        { headers: { 'Authorization': `Bearer ${token}` } }
-      );
-      tempsReponseMessagerie = Math.round(messageResponse.data);
-    } catch (error) {
-      console.warn('Impossible de récupérer le temps de réponse messagerie:', error);
-    }
-
-    const nbProduitsDevis = produits.length;
-    const nbProduitsDejaPurchased = produits.filter(p => purchaseCounts[p.id] > 0).length;
-    
-    let delaiTraitementHeures = 0;
-    if (devis && devis.createdAt) {
-        const currentTime = new Date();
-        const creationDate = new Date(devis.createdAt);
-        delaiTraitementHeures = Math.floor((currentTime - creationDate) / (1000 * 60 * 60));
-    }
-    
-    const modelData = {
-      totalCommandes: clientStats.data.totalCommandes,
-      totalDevis: clientStats.data.totalDevis,
-      totalMontantCommandes: clientStats.data.totalMontantCommandes,
-      nb_produits_devis: nbProduitsDevis,
-      nb_produits_deja_achetes: nbProduitsDejaPurchased,
-      temps_dans_application_min: tempsPasseMinutes,
-      temps_reponse_messagerie_min: tempsReponseMessagerie,
-      delai_traitement_devis_hrs: delaiTraitementHeures,
-      taux_conversion: clientStats.data.totalDevis > 0 ? (clientStats.data.totalCommandes / clientStats.data.totalDevis) * 100 : 0,
-      moyenne_montant_commande: clientStats.data.totalCommandes > 0 ? clientStats.data.totalMontantCommandes / clientStats.data.totalCommandes : 0,
-      ratio_produits_achetes: nbProduitsDevis > 0 ? nbProduitsDejaPurchased / nbProduitsDevis : 0
-    };
-
-    // Appel à l'API de prédiction
+    // Les agrégats du client et du devis sont complétés côté serveur
     const response = await axios.post(
       'http://localhost:8080/api/predictions/analyze',
-      modelData,
+      { devisId: devis.id },
       { 
         headers: { 
           'Authorization': `Bearer ${token}`,
@@ -2604,6 +2590,7 @@ const analyzeProbability = async () => {
         } 
       }
     );
+    const modelData = response.data.inputs;
 
     // Appel à l'API de négociation
     let negotiationData = null;
@@ -3020,6 +3007,18 @@ const analyzeProbability = async () => {
 `;
 
   
+  // Étude de marché de toutes les lignes du devis en une seule requête
+  const analyzeAllPrices = async () => {
+    const analyzed = await analyzeDevisPrices(produits.map(produit => ({
+      produitId: produit.id,
+      nom: produit.nom,
+      prixUnitaire: produit.prix
+    })));
+    if (analyzed) {
+      setMarketResults(analyzed);
+    }
+  };
+
   const analyzePrices = async (productName, produit) => {
     let modal = null;
 
@@ -3256,6 +3255,13 @@ const handleFormSubmit = async () => {
             </div>
           ) : (
             <>
+              <div className="market-study-all">
+                <button className="market-study-btn" onClick={analyzeAllPrices} disabled={analyzingMarket}>
+                  <ChartBar size={14} />
+                  {analyzingMarket ? 'Étude en cours...' : 'Étude marché du devis'}
+                </button>
+                {marketError && <span className="error-message">{marketError}</span>}
+              </div>
               <table className="produits-table">
                 <thead>
                   <tr>
@@ -3330,6 +3336,17 @@ const handleFormSubmit = async () => {
                           <ChartBar size={14} />
                           Étude marché
                         </button>
+                        {marketResults[produit.id] && (
+                          <div className="market-suggestion">
+                            <span>Prix suggéré : {marketResults[produit.id].suggestedPrice} MAD</span>
+                            <button
+                              className="apply-offer-btn"
+                              onClick={() => handlePriceChange(produit.id, marketResults[produit.id].suggestedPrice)}
+                            >
+                              Appliquer
+                            </button>
+                          </div>
+                        )}
                       </td>
                     </tr>
                   ))}
@@ -1,17 +1,33 @@
 package com.Sofimed.Controller;
 
+import com.Sofimed.DTO.PredictionFeatures;
+import com.Sofimed.DTO.PredictionResponse;
+import com.Sofimed.Service.ClientFeatureStore;
+import com.Sofimed.Service.ConversationAggregateStore;
+import com.Sofimed.Service.ModelWorkerPool;
+import com.Sofimed.Service.PredictionCache;
+import com.Sofimed.Service.PredictionJobService;
+import com.Sofimed.Service.PredictionJobService.PredictionJob;
+
+import io.micrometer.core.instrument.Timer;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.core.io.ClassPathResource;
-import org.springframework.core.io.Resource;
 
+import javax.annotation.PostConstruct;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.io.*;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 
 @RestController
 @RequestMapping("/api/predictions")
@@ -19,83 +35,85 @@ import java.nio.file.Paths;
 public class PredictionController {
 
     private static final Logger logger = LoggerFactory.getLogger(PredictionController.class);
-    
+    // Requêtes échantillonnées : niveau réglable sans ouvrir le debug du reste du contrôleur
+    private static final Logger sampleLogger = LoggerFactory.getLogger(PredictionController.class.getName() + ".sample");
+
+    @Autowired
+    private ConversationAggregateStore conversationAggregateStore;
+
+    @Autowired
+    private ClientFeatureStore clientFeatureStore;
+
+    @Autowired
+    private ModelWorkerPool modelWorkerPool;
+
+    @Autowired
+    private PredictionCache predictionCache;
+
     @Autowired
-    private MessageController messageController;
-    
-    private static final Set<String> REQUIRED_NUMERIC_FIELDS = Set.of(
-        "totalCommandes", "totalDevis", "totalMontantCommandes",
-        "nb_produits_devis", "nb_produits_deja_achetes",
-        "temps_dans_application_min", "temps_reponse_messagerie_min",
-        "delai_traitement_devis_hrs", "taux_conversion",
-        "moyenne_montant_commande", "ratio_produits_achetes"
-    );
+    private PredictionJobService predictionJobService;
+
+    @Autowired
+    @Qualifier("predictionIoExecutor")
+    private ExecutorService predictionIoExecutor;
+
+    // Part des requêtes dont le contenu est journalisé en debug
+    @Value("${prediction.log.sample-rate:0.01}")
+    private double logSampleRate;
+
+    // Au-delà, le lot est refusé (413) : une requête ne doit pas monopoliser le modèle
+    @Value("${prediction.batch.max-size:200}")
+    private int maxBatchSize;
+
+    private Timer enrichmentTimer;
+    private Timer validationTimer;
+
+    @PostConstruct
+    public void initMetrics() {
+        enrichmentTimer = modelWorkerPool.stageTimer("enrichment");
+        validationTimer = modelWorkerPool.stageTimer("validation");
+    }
 
     @PostMapping("/analyze")
     public ResponseEntity<?> analyzeProbability(@RequestBody Map<String, Object> requestData) {
         try {
-            logger.info("Requête de prédiction reçue: {}", requestData);
+            if (sampleLogger.isDebugEnabled() && ThreadLocalRandom.current().nextDouble() < logSampleRate) {
+                sampleLogger.debug("Requête de prédiction reçue (échantillon): {}", requestData);
+            }
 
-            // Récupérer l'ID du devis pour enrichir avec les messages
-            if (requestData.containsKey("devisId")) {
-                try {
-                    Long devisId = Long.parseLong(requestData.get("devisId").toString());
-                    
-                    // Récupérer les messages traités
-                    ResponseEntity<Map<String, Object>> messagesResponse = 
-                        messageController.getProcessedConversation(devisId);
-                    
-                    if (messagesResponse.getStatusCode().is2xxSuccessful() && messagesResponse.getBody() != null) {
-                        Map<String, Object> conversationData = messagesResponse.getBody();
-                        
-                        // Ajouter le texte des messages
-                        String rawText = (String) conversationData.get("rawText");
-                        if (rawText != null && !rawText.isEmpty()) {
-                            // Limiter à 5000 caractères pour éviter les problèmes de performance
-                            requestData.put("messages", rawText.length() > 5000 ? 
-                                rawText.substring(0, 5000) + "..." : rawText);
-                        }
-                        
-                        // Ajouter les statistiques de conversation
-                        @SuppressWarnings("unchecked")
-                        Map<String, Object> stats = (Map<String, Object>) conversationData.get("stats");
-                        if (stats != null) {
-                            requestData.put("messageCount", stats.get("messageCount"));
-                            requestData.put("sentimentScore", stats.get("sentimentScore"));
-                            requestData.put("negotiationIndicators", stats.get("negotiationIndicators"));
-                            requestData.put("objectionIndicators", stats.get("objectionIndicators"));
-                        }
-                        
-                        logger.info("Messages intégrés avec succès pour le devis {}", devisId);
-                    }
-                } catch (Exception e) {
-                    logger.warn("Impossible de récupérer les messages pour le devis: {}", e.getMessage());
-                    // Continue sans les messages
-                }
+            // Lecture des entrées pendant que la conversation est récupérée en parallèle
+            PreparedRequest prepared = prepare(requestData, new HashMap<>());
+            if (!prepared.errors().isEmpty()) {
+                return ResponseEntity.badRequest().body(prepared.errors());
+            }
+            PredictionFeatures features = enrich(prepared);
+
+            // Même devis, mêmes entrées et même conversation : résultat déjà connu
+            String cacheKey = predictionCache.key(features.getDevisId(), features);
+            Optional<PredictionResponse> cached = predictionCache.get(cacheKey);
+            if (cached.isPresent()) {
+                return ResponseEntity.ok(withInputs(cached.get(), features));
             }
 
-            // Validation des données requises
-            Map<String, String> validationErrors = validateRequestData(requestData);
-            if (!validationErrors.isEmpty()) {
-                return ResponseEntity.badRequest().body(validationErrors);
+            PredictionResponse response;
+            try {
+                response = scoreAndCache(features, cacheKey);
+            } catch (RejectedExecutionException e) {
+                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body(Map.of("error", "Trop de prédictions en cours, réessayez plus tard"));
+            } catch (IOException | IllegalStateException e) {
+                logger.error("Erreur lors de l'exécution Python: {}", e.getMessage());
+                return ResponseEntity.internalServerError()
+                    .body(Map.of("error", "Erreur du modèle", "details", e.getMessage()));
             }
 
-            // Préparation de la commande Python
-            List<String> command = buildPythonCommand(requestData);
-            
-            // Exécution du script Python
-            ProcessResult result = executePythonScript(command);
-            
-            if (!result.success()) {
-                logger.error("Erreur lors de l'exécution Python: {}", result.output());
+            if (response.isError()) {
+                logger.error("Erreur du modèle: {}", response.getError());
                 return ResponseEntity.internalServerError()
-                    .body(Map.of("error", "Erreur du modèle", "details", result.output()));
+                    .body(Map.of("error", "Erreur du modèle", "details", response.getError()));
             }
 
-            // Parsing des résultats
-            PredictionResponse response = parsePythonOutput(result.output());
-            
-            return ResponseEntity.ok(response.toMap());
+            return ResponseEntity.ok(withInputs(response, features));
 
         } catch (Exception e) {
             logger.error("Erreur système lors de la prédiction", e);
@@ -104,223 +122,205 @@ public class PredictionController {
         }
     }
 
-    private Map<String, String> validateRequestData(Map<String, Object> requestData) {
-        Map<String, String> errors = new HashMap<>();
-        
-        // Vérification des champs obligatoires
-        for (String field : REQUIRED_NUMERIC_FIELDS) {
-            if (!requestData.containsKey(field)) {
-                errors.put(field, "Ce champ est obligatoire");
-                continue;
+    // Mode asynchrone : renvoie un job tout de suite, le résultat est poussé sur /topic/predictions/{devisId}
+    @PostMapping("/analyze-async")
+    public ResponseEntity<?> analyzeProbabilityAsync(@RequestBody Map<String, Object> requestData) {
+        try {
+            PreparedRequest prepared = prepare(requestData, new HashMap<>());
+            if (!prepared.errors().isEmpty()) {
+                return ResponseEntity.badRequest().body(prepared.errors());
             }
-            
-            try {
-                Double.parseDouble(requestData.get(field).toString());
-            } catch (NumberFormatException e) {
-                errors.put(field, "Doit être un nombre valide");
+            PredictionFeatures features = enrich(prepared);
+
+            String cacheKey = predictionCache.key(features.getDevisId(), features);
+            Optional<PredictionResponse> cached = predictionCache.get(cacheKey);
+            if (cached.isPresent()) {
+                return ResponseEntity.ok(Map.of("status", "DONE", "result", cached.get().toMap()));
             }
-        }
-        
-        // Vérification du champ messages (optionnel mais recommandé)
-        if (requestData.containsKey("messages") && requestData.get("messages") != null) {
-            String messages = requestData.get("messages").toString();
-            if (messages.length() > 10000) {
-                errors.put("messages", "Le texte des messages ne doit pas dépasser 10000 caractères");
+
+            try {
+                PredictionJob job = predictionJobService.submit(features.getDevisId(), cacheKey, () -> {
+                    PredictionResponse response = scoreAndCache(features, cacheKey);
+                    if (response.isError()) {
+                        throw new IllegalStateException(response.getError());
+                    }
+                    return response.toMap();
+                });
+                return ResponseEntity.accepted().body(job.toMap());
+            } catch (RejectedExecutionException e) {
+                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body(Map.of("error", "Trop de prédictions en attente, réessayez plus tard"));
             }
-        }
-        
-        return errors;
-    }
 
-    private List<String> buildPythonCommand(Map<String, Object> requestData) throws IOException {
-        List<String> command = new ArrayList<>();
-        command.add("python");
-        
-        // Chargement du script Python depuis les ressources
-        Resource resource = new ClassPathResource("python/commercial_model.py");
-        File pythonFile = resource.getFile();
-        
-        if (!pythonFile.exists()) {
-            throw new FileNotFoundException("Fichier Python introuvable: " + pythonFile.getAbsolutePath());
-        }
-        
-        command.add(pythonFile.getAbsolutePath());
-        
-        // Ajout des arguments numériques
-        REQUIRED_NUMERIC_FIELDS.forEach(field -> {
-            command.add("--" + field);
-            command.add(requestData.get(field).toString());
-        });
-        
-        // Ajout des messages si présents
-        if (requestData.containsKey("messages") && requestData.get("messages") != null) {
-            command.add("--messages");
-            command.add(escapePythonArgument(requestData.get("messages").toString()));
-        }
-        
-        // Ajout des nouvelles statistiques de conversation
-        if (requestData.containsKey("messageCount")) {
-            command.add("--messageCount");
-            command.add(requestData.get("messageCount").toString());
-        }
-        
-        if (requestData.containsKey("sentimentScore")) {
-            command.add("--sentimentScore");
-            command.add(requestData.get("sentimentScore").toString());
-        }
-        
-        if (requestData.containsKey("negotiationIndicators")) {
-            command.add("--negotiationIndicators");
-            command.add(requestData.get("negotiationIndicators").toString());
-        }
-        
-        if (requestData.containsKey("objectionIndicators")) {
-            command.add("--objectionIndicators");
-            command.add(requestData.get("objectionIndicators").toString());
+        } catch (Exception e) {
+            logger.error("Erreur système lors de la prédiction asynchrone", e);
+            return ResponseEntity.internalServerError()
+                .body(Map.of("error", "Erreur système", "details", e.getMessage()));
         }
-        
-        return command;
     }
 
-    private String escapePythonArgument(String arg) {
-        // Échappement basique pour la sécurité
-        return arg.replace("\"", "\\\"")
-                 .replace("'", "\\'")
-                 .replace("`", "\\`")
-                 .replace("$", "\\$");
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<?> getPredictionJob(@PathVariable String jobId) {
+        return predictionJobService.find(jobId)
+            .<ResponseEntity<?>>map(job -> ResponseEntity.ok(job.toMap()))
+            .orElse(ResponseEntity.notFound().build());
     }
 
-    private ProcessResult executePythonScript(List<String> command) throws IOException, InterruptedException {
-        logger.info("Exécution de la commande Python: {}", command);
-        
-        ProcessBuilder pb = new ProcessBuilder(command);
-        pb.redirectErrorStream(true);
-        
-        Process process = pb.start();
-        StringBuilder output = new StringBuilder();
-        
-        try (BufferedReader reader = new BufferedReader(
-            new InputStreamReader(process.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                output.append(line).append("\n");
-                logger.debug("PYTHON> {}", line);
-            }
+    @PostMapping("/analyze-batch")
+    public ResponseEntity<?> analyzeBatch(@RequestBody List<Map<String, Object>> batch) {
+        if (batch.size() > maxBatchSize) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                .body(Map.of("error", "Au plus " + maxBatchSize + " devis par lot"));
         }
-        
-        int exitCode = process.waitFor();
-        return new ProcessResult(exitCode == 0, output.toString());
-    }
-
-    private PredictionResponse parsePythonOutput(String output) {
         try {
-            // Le script Python doit retourner du JSON valide
-            String jsonOutput = output.trim();
-            
-            // Trouver la dernière ligne JSON valide
-            int lastBrace = jsonOutput.lastIndexOf("}");
-            if (lastBrace == -1) {
-                throw new RuntimeException("Format de sortie Python invalide");
+            logger.debug("Requête de prédiction groupée reçue: {} devis", batch.size());
+
+            // Une seule récupération de conversation par devis, même s'il apparaît plusieurs fois
+            Map<Long, CompletableFuture<Map<String, Object>>> conversations = new HashMap<>();
+
+            List<Map<String, Object>> results = new ArrayList<>(batch.size());
+            List<PreparedRequest> preparedRequests = new ArrayList<>(batch.size());
+            List<PredictionFeatures> modelInputs = new ArrayList<>();
+            List<Integer> scoredIndexes = new ArrayList<>();
+            List<String> scoredKeys = new ArrayList<>();
+
+            // Toutes les récupérations de conversation partent avant la première attente
+            for (int i = 0; i < batch.size(); i++) {
+                Map<String, Object> requestData = batch.get(i) != null ? new HashMap<>(batch.get(i)) : new HashMap<>();
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("index", i);
+                item.put("devisId", requestData.get("devisId"));
+                results.add(item);
+                preparedRequests.add(prepare(requestData, conversations));
             }
-            
-            String json = jsonOutput.substring(0, lastBrace + 1);
-            
-            // Parse simplifié (utiliser une lib JSON en production)
-            Map<String, Object> result = new HashMap<>();
-            String[] parts = json.replace("{", "").replace("}", "").replace("\"", "").split(",");
-            
-            for (String part : parts) {
-                String[] kv = part.split(":");
-                if (kv.length == 2) {
-                    String key = kv[0].trim();
-                    String value = kv[1].trim();
-                    
-                    // Conversion des types basiques
-                    if (value.equals("true") || value.equals("false")) {
-                        result.put(key, Boolean.parseBoolean(value));
+
+            for (int i = 0; i < batch.size(); i++) {
+                Map<String, Object> item = results.get(i);
+                PreparedRequest prepared = preparedRequests.get(i);
+                if (!prepared.errors().isEmpty()) {
+                    item.put("status", "invalid");
+                    item.put("errors", prepared.errors());
+                    continue;
+                }
+                PredictionFeatures features = enrich(prepared);
+
+                String cacheKey = predictionCache.key(features.getDevisId(), features);
+                Optional<PredictionResponse> cached = predictionCache.get(cacheKey);
+                if (cached.isPresent()) {
+                    item.put("status", "ok");
+                    item.put("result", cached.get().toMap());
+                    continue;
+                }
+
+                modelInputs.add(features);
+                scoredIndexes.add(i);
+                scoredKeys.add(cacheKey);
+            }
+
+            if (!modelInputs.isEmpty()) {
+                long start = System.nanoTime();
+                List<PredictionResponse> outputs;
+                try {
+                    outputs = modelWorkerPool.score(Map.of("batch", modelInputs), PredictionResponse::readBatch);
+                } catch (RejectedExecutionException e) {
+                    return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .body(Map.of("error", "Trop de prédictions en cours, réessayez plus tard"));
+                } catch (IOException | IllegalStateException e) {
+                    logger.error("Erreur lors de l'exécution Python groupée: {}", e.getMessage());
+                    return ResponseEntity.internalServerError()
+                        .body(Map.of("error", "Erreur du modèle", "details", e.getMessage()));
+                }
+                long computeNanosPerItem = (System.nanoTime() - start) / modelInputs.size();
+
+                for (int j = 0; j < scoredIndexes.size(); j++) {
+                    Map<String, Object> item = results.get(scoredIndexes.get(j));
+                    PredictionResponse output = j < outputs.size() ? outputs.get(j) : null;
+
+                    if (output == null || output.isError()) {
+                        item.put("status", "error");
+                        item.put("error", output != null ? output.getError() : "Résultat manquant");
                     } else {
-                        try {
-                            result.put(key, Double.parseDouble(value));
-                        } catch (NumberFormatException e) {
-                            result.put(key, value);
-                        }
+                        item.put("status", "ok");
+                        item.put("result", output.toMap());
+                        predictionCache.put(modelInputs.get(j).getDevisId(), scoredKeys.get(j),
+                            output, computeNanosPerItem);
                     }
                 }
             }
-            
-            return new PredictionResponse(result);
-            
+
+            return ResponseEntity.ok(results);
+
         } catch (Exception e) {
-            logger.error("Erreur lors du parsing de la sortie Python", e);
-            throw new RuntimeException("Erreur d'analyse des résultats: " + e.getMessage());
+            logger.error("Erreur système lors de la prédiction groupée", e);
+            return ResponseEntity.internalServerError()
+                .body(Map.of("error", "Erreur système", "details", e.getMessage()));
         }
     }
 
-    // Classes internes pour la gestion des résultats
-    private record ProcessResult(boolean success, String output) {}
-    
-    private static class PredictionResponse {
-        private final double prediction;
-        private final double confidence;
-        private final String sentiment;
-        private final Map<String, Double> scores;
-        private final Map<String, List<String>> keywords;
-        
-        public PredictionResponse(Map<String, Object> pythonResult) {
-            this.prediction = ((Number) pythonResult.getOrDefault("prediction", 0)).doubleValue();
-            this.confidence = ((Number) pythonResult.getOrDefault("interest_score", 0.8)).doubleValue();
-            this.sentiment = pythonResult.getOrDefault("sentiment", "neutral").toString();
-            
-            this.scores = new HashMap<>();
-            this.scores.put("negotiation", ((Number) pythonResult.getOrDefault("negotiation_score", 0)).doubleValue());
-            this.scores.put("objection", ((Number) pythonResult.getOrDefault("objection_score", 0)).doubleValue());
-            
-            this.keywords = extractKeywords(pythonResult);
-        }
-        
-        private static Map<String, List<String>> extractKeywords(Map<String, Object> result) {
-            Map<String, List<String>> keywords = new HashMap<>();
-            
-            if (result.containsKey("detected_keywords")) {
-                try {
-                    @SuppressWarnings("unchecked")
-                    Map<String, List<String>> rawKeywords = 
-                        (Map<String, List<String>>) result.get("detected_keywords");
-                    
-                    rawKeywords.forEach((category, words) -> {
-                        if (words != null && !words.isEmpty()) {
-                            keywords.put(category, new ArrayList<>(words));
-                        }
-                    });
-                } catch (ClassCastException e) {
-                    logger.warn("Format des mots-clés invalide", e);
-                }
-            }
-            
-            return keywords;
+    // Résultat accompagné des entrées retenues, dont celles complétées côté serveur
+    private static Map<String, Object> withInputs(PredictionResponse response, PredictionFeatures features) {
+        Map<String, Object> body = response.toMap();
+        body.put("inputs", features.inputs());
+        return body;
+    }
+
+    // Entrées validées et conversation en cours de récupération, ou erreurs de validation
+    private record PreparedRequest(PredictionFeatures features, Map<String, String> errors,
+                                   CompletableFuture<Map<String, Object>> conversation) {}
+
+    /**
+     * Lance la récupération de la conversation du devis sur l'exécuteur d'E/S puis lit
+     * et valide les champs numériques sans l'attendre ; {@link #enrich(PreparedRequest)}
+     * attend ensuite la conversation. En cas d'erreur de validation, la réponse part
+     * sans attendre la conversation.
+     */
+    private PreparedRequest prepare(Map<String, Object> requestData,
+                                    Map<Long, CompletableFuture<Map<String, Object>>> conversations) {
+        Long devisId = PredictionFeatures.parseDevisId(requestData.get("devisId"));
+        CompletableFuture<Map<String, Object>> conversation = devisId == null
+            ? CompletableFuture.completedFuture(null)
+            : conversations.computeIfAbsent(devisId, id ->
+                CompletableFuture.supplyAsync(() -> fetchConversation(id), predictionIoExecutor));
+
+        // Agrégats précalculés du devis pour les champs que le client n'a pas fournis
+        double[] defaults = devisId != null ? clientFeatureStore.vector(devisId).orElse(null) : null;
+
+        long validationStart = System.nanoTime();
+        Map<String, String> errors = new HashMap<>();
+        PredictionFeatures features = PredictionFeatures.parse(requestData, defaults, errors);
+        validationTimer.record(System.nanoTime() - validationStart, TimeUnit.NANOSECONDS);
+        return new PreparedRequest(features, errors, conversation);
+    }
+
+    // Attente résiduelle de la conversation, récupérée pendant la validation
+    private PredictionFeatures enrich(PreparedRequest prepared) {
+        long enrichmentStart = System.nanoTime();
+        prepared.features().applyConversation(prepared.conversation().join());
+        enrichmentTimer.record(System.nanoTime() - enrichmentStart, TimeUnit.NANOSECONDS);
+        return prepared.features();
+    }
+
+    // Exécution par un worker Python déjà chargé, résultat lu en flux depuis sa sortie
+    private PredictionResponse scoreAndCache(PredictionFeatures features, String cacheKey)
+            throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        PredictionResponse response = modelWorkerPool.score(features, PredictionResponse::read);
+        if (!response.isError()) {
+            predictionCache.put(features.getDevisId(), cacheKey, response, System.nanoTime() - start);
         }
-        
-        public Map<String, Object> toMap() {
-            Map<String, Object> response = new LinkedHashMap<>();
-            response.put("prediction", this.prediction);
-            response.put("confidence", this.confidence);
-            response.put("sentiment", this.sentiment);
-            response.put("scores", this.scores);
-            
-            if (!this.keywords.isEmpty()) {
-                response.put("keywords", this.keywords);
-            }
-            
-            // Ajout des facteurs clés basés sur l'analyse
-            List<String> keyFactors = new ArrayList<>();
-            if (this.prediction > 70) keyFactors.add("Fort potentiel d'acceptation");
-            if (this.scores.get("negotiation") > 0.5) keyFactors.add("Client en négociation");
-            if (this.scores.get("objection") > 0.3) keyFactors.add("Objections à traiter");
-            if (this.sentiment.equals("positive")) keyFactors.add("Sentiment positif");
-            
-            response.put("keyFactors", keyFactors);
-            
-            return response;
+        return response;
+    }
+
+    private Map<String, Object> fetchConversation(Long devisId) {
+        try {
+            // Agrégats de conversation maintenus incrémentalement
+            Map<String, Object> conversationData = conversationAggregateStore.snapshot(devisId);
+            logger.debug("Messages intégrés pour le devis {}", devisId);
+            return conversationData;
+        } catch (Exception e) {
+            logger.warn("Impossible de récupérer les messages pour le devis: {}", e.getMessage());
+            // Continue sans les messages
+            return null;
         }
     }
-}
\ No newline at end of file
+}
@@ -3,22 +3,40 @@ package com.Sofimed.Controller;
 import com.Sofimed.Model.Message;
 import com.Sofimed.Model.Devis;
 import com.Sofimed.Service.MessageService;
+import com.Sofimed.Service.ConversationAggregateStore;
+import com.Sofimed.Service.UnreadCounterService;
+import com.Sofimed.Service.ResponseTimeStats;
+import com.Sofimed.Service.WebSocketDispatcher;
 import com.Sofimed.DTO.MessageDTO;
 import com.Sofimed.Dao.DevisRepository;
-import com.Sofimed.Exception.ResourceNotFoundException;
+import com.Sofimed.Dao.MessageCursorDao;
+import com.Sofimed.Event.MessageSavedEvent;
+import com.Sofimed.Event.MessagesReadEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.annotation.PostConstruct;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
-import java.util.HashMap;
-import java.util.Arrays;
-
 @RestController
 @RequestMapping("/api/messages")
 @CrossOrigin(
@@ -35,6 +53,14 @@ import java.util.Arrays;
 )
 public class MessageController {
 
+    private static final Logger logger = LoggerFactory.getLogger(MessageController.class);
+
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int TEXT_PAGE_SIZE = 50;
+    // Approximation courante pour le budget de tokens du modèle
+    private static final int CHARS_PER_TOKEN = 4;
+
     @Autowired
     private MessageService messageService;
 
@@ -42,7 +68,46 @@ public class MessageController {
     private DevisRepository devisService;
 
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private WebSocketDispatcher webSocketDispatcher;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private ConversationAggregateStore conversationAggregateStore;
+
+    @Autowired
+    private MessageCursorDao messageCursorDao;
+
+    @Autowired
+    private UnreadCounterService unreadCounterService;
+
+    @Autowired
+    private ResponseTimeStats responseTimeStats;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Timer sendPersistTimer;
+    private Timer sendEventsTimer;
+    private Timer sendBroadcastTimer;
+
+    @PostConstruct
+    public void initMetrics() {
+        sendPersistTimer = sendTimer("persist");
+        sendEventsTimer = sendTimer("events");
+        sendBroadcastTimer = sendTimer("broadcast");
+    }
+
+    private Timer sendTimer(String stage) {
+        return Timer.builder("messages.send.stage")
+            .description("Durée de chaque étape de l'envoi d'un message")
+            .tag("stage", stage)
+            .register(meterRegistry);
+    }
 
     @GetMapping("/temps-reponse-moyen-client/{devisId}")
     public ResponseEntity<Double> getTempsReponseMoyenClient(@PathVariable Long devisId,
@@ -58,39 +123,113 @@ public class MessageController {
         double tempsMoyen = messageService.calculerTempsReponseMoyen(devisId, commercialId);
         return ResponseEntity.ok(tempsMoyen);
     }
+
+    // Délais de réponse agrégés au fil de l'eau : moyenne et percentiles en minutes, lecture en O(1)
+    @GetMapping("/temps-reponse/devis/{devisId}")
+    public ResponseEntity<Map<String, Object>> getTempsReponseDevis(@PathVariable Long devisId) {
+        return ResponseEntity.ok(responseTimeStats.forDevis(devisId));
+    }
+
+    @GetMapping("/temps-reponse/commercial/{commercialId}")
+    public ResponseEntity<Map<String, Object>> getTempsReponseCommercial(@PathVariable Long commercialId) {
+        return ResponseEntity.ok(responseTimeStats.forCommercial(commercialId));
+    }
+
+    @GetMapping("/temps-reponse/client/{clientId}")
+    public ResponseEntity<Map<String, Object>> getTempsReponseClient(@PathVariable Long clientId) {
+        return ResponseEntity.ok(responseTimeStats.forClient(clientId));
+    }
     
 
 
+    // Sans paramètre : tout le fil. Avec ?after=<messageId>&limit= : uniquement les messages suivants
     @GetMapping("/devis/{devisId}")
-    public ResponseEntity<List<MessageDTO>> getMessagesByDevis(@PathVariable Long devisId) {
-        List<Message> messages = messageService.findByDevisId(devisId);
+    public ResponseEntity<List<MessageDTO>> getMessagesByDevis(@PathVariable Long devisId,
+                                                               @RequestParam(required = false) Long after,
+                                                               @RequestParam(required = false) Integer limit) {
+        List<Message> messages;
+        if (after == null && limit == null) {
+            messages = messageService.findByDevisId(devisId);
+        } else {
+            int pageSize = limit == null || limit <= 0 ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+            messages = messageCursorDao.findByDevisIdAfter(devisId, after != null ? after : 0L, pageSize);
+        }
         List<MessageDTO> dtos = messages.stream().map(MessageDTO::fromEntity).collect(Collectors.toList());
         return ResponseEntity.ok(dtos);
     }
 
+    // Export NDJSON du fil : une ligne JSON par message, écrite page par page à mémoire constante
+    @GetMapping(value = "/devis/{devisId}/export", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> exportMessages(@PathVariable Long devisId) {
+        StreamingResponseBody body = outputStream -> {
+            long cursor = 0L;
+            List<Message> page;
+            do {
+                page = messageCursorDao.findByDevisIdAfter(devisId, cursor, MAX_PAGE_SIZE);
+                for (Message message : page) {
+                    outputStream.write(objectMapper.writeValueAsBytes(MessageDTO.fromEntity(message)));
+                    outputStream.write('\n');
+                    cursor = message.getId();
+                }
+                outputStream.flush();
+            } while (page.size() == MAX_PAGE_SIZE);
+        };
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType("application/x-ndjson"))
+            .body(body);
+    }
+
     // Envoyer un nouveau message et notifier via WebSocket
     @PostMapping
     public ResponseEntity<MessageDTO> sendMessage(@RequestBody Map<String, Object> messageRequest) {
+        Long devisId;
+        Long senderId;
+        Long recipientId;
+        String content;
+        String senderName;
         try {
-            Long devisId = Long.parseLong(messageRequest.get("devisId").toString());
-            String content = (String) messageRequest.get("content");
-            Long senderId = Long.parseLong(messageRequest.get("senderId").toString());
-            String senderName = (String) messageRequest.get("senderName");
-            Long recipientId = Long.parseLong(messageRequest.get("recipientId").toString());
+            devisId = Long.parseLong(messageRequest.get("devisId").toString());
+            content = (String) messageRequest.get("content");
+            senderId = Long.parseLong(messageRequest.get("senderId").toString());
+            senderName = (String) messageRequest.get("senderName");
+            recipientId = Long.parseLong(messageRequest.get("recipientId").toString());
+        } catch (NullPointerException | NumberFormatException | ClassCastException e) {
+            return ResponseEntity.badRequest().build();
+        }
 
-            Devis devis = devisService.findById(devisId)
-                .orElseThrow(() -> new ResourceNotFoundException("Devis non trouvé avec l'ID: " + devisId));
+        Devis devis = devisService.findById(devisId).orElse(null);
+        if (devis == null) {
+            return ResponseEntity.notFound().build();
+        }
 
-            Message message = messageService.saveMessage(devis, senderId, senderName, recipientId, content);
-            MessageDTO dto = MessageDTO.fromEntity(message);
+        // Une erreur d'enregistrement remonte en 500
+        long start = System.nanoTime();
+        Message message = messageService.saveMessage(devis, senderId, senderName, recipientId, content);
+        MessageDTO dto = MessageDTO.fromEntity(message);
+        long persisted = System.nanoTime();
+        sendPersistTimer.record(persisted - start, TimeUnit.NANOSECONDS);
 
-            // Notifier les clients connectés au salon du devis via WebSocket
-            messagingTemplate.convertAndSend("/topic/messages/" + devisId, dto);
+        // Message enregistré : les étapes suivantes ne changent plus la réponse
+        try {
+            // Invalide les prédictions et agrégats dépendant de la conversation
+            eventPublisher.publishEvent(new MessageSavedEvent(devisId, message));
+        } catch (RuntimeException e) {
+            logger.error("Traitement de l'enregistrement du message {} en échec", message.getId(), e);
+        }
+        long notified = System.nanoTime();
+        sendEventsTimer.record(notified - persisted, TimeUnit.NANOSECONDS);
 
-            return ResponseEntity.ok(dto);
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().build();
+        try {
+            // Notifier les clients connectés au salon du devis via WebSocket (envoi groupé)
+            webSocketDispatcher.publish("/topic/messages/devis/" + devisId, dto);
+            // et le destinataire, où qu'il soit dans l'application
+            webSocketDispatcher.publish("/topic/messages/user/" + recipientId, dto);
+        } catch (RuntimeException e) {
+            logger.error("Diffusion du message {} impossible", message.getId(), e);
         }
+        sendBroadcastTimer.record(System.nanoTime() - notified, TimeUnit.NANOSECONDS);
+
+        return ResponseEntity.ok(dto);
     }
 
     // Marquer les messages comme lus
@@ -107,130 +246,86 @@ public class MessageController {
                 // Marquer tous les messages du devis comme lus
                 messageService.markAllAsRead(devisId);
             }
+            eventPublisher.publishEvent(new MessagesReadEvent(devisId, recipientId));
             return ResponseEntity.ok().build();
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
-    // Compter les messages non lus
+    // Compter les messages non lus (compteurs en mémoire, aussi poussés sur /topic/messages/unread/{userId})
     @GetMapping("/unread/count")
     public ResponseEntity<Map<String, Long>> countUnreadMessages(
             @RequestParam Long userId,
             @RequestParam(required = false) String userType) {
 
         try {
-            Map<String, Long> counts = messageService.countUnreadMessages(userId, userType);
-            return ResponseEntity.ok(counts);
+            return ResponseEntity.ok(Map.of("total", unreadCounterService.getTotal(userId)));
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
-    // Nouvelle méthode pour récupérer le texte de conversation pour l'IA
-    @GetMapping("/conversation-text/{devisId}")
-    public ResponseEntity<String> getConversationText(@PathVariable Long devisId) {
-        try {
-            // Récupérer tous les messages du devis
-            List<Message> messages = messageService.findByDevisId(devisId);
+    // Texte de conversation pour l'IA, limité à un budget de caractères ou de tokens.
+    // Les messages sont lus du plus récent au plus ancien et la lecture s'arrête dès que
+    // le budget est atteint ; le texte est ensuite écrit dans l'ordre chronologique.
+    @GetMapping(value = "/conversation-text/{devisId}", produces = "text/plain;charset=UTF-8")
+    public ResponseEntity<StreamingResponseBody> getConversationText(
+        @PathVariable Long devisId,
+        @RequestParam(defaultValue = "5000") int maxChars,
+        @RequestParam(required = false) Integer maxTokens) {
+        
+        int budget = maxTokens != null ? Math.min(maxChars, maxTokens * CHARS_PER_TOKEN) : maxChars;
+        
+        StreamingResponseBody body = outputStream -> {
+            Deque<String> lines = new ArrayDeque<>();
+            int remaining = budget;
+            Long cursor = null;
+            List<Message> page;
             
-            // Formater les messages en texte pour l'IA
-            String conversationText = messages.stream()
-                .map(msg -> String.format("%s [%s]: %s", 
-                    msg.getSenderName(), 
-                    msg.getTimestamp().toString(), 
-                    msg.getContent()))
-                .collect(Collectors.joining("\n"));
+            do {
+                page = messageCursorDao.findByDevisIdBefore(devisId, cursor, TEXT_PAGE_SIZE);
+                for (Message msg : page) {
+                    String line = String.format("%s [%s]: %s", 
+                        msg.getSenderName(), 
+                        msg.getTimestamp().toString(), 
+                        msg.getContent());
+                    
+                    if (line.length() + 1 > remaining) {
+                        // Le message le plus récent est tronqué plutôt qu'omis
+                        if (lines.isEmpty() && remaining > 0) {
+                            lines.addFirst(line.substring(line.length() - remaining));
+                        }
+                        remaining = 0;
+                        break;
+                    }
+                    lines.addFirst(line);
+                    remaining -= line.length() + 1;
+                    cursor = msg.getId();
+                }
+            } while (remaining > 0 && page.size() == TEXT_PAGE_SIZE);
             
-            return ResponseEntity.ok(conversationText);
-        } catch (Exception e) {
-            return ResponseEntity.internalServerError()
-                .body("Erreur lors de la récupération des messages");
-        }
+            Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+            for (String line : lines) {
+                writer.write(line);
+                writer.write('\n');
+            }
+            writer.flush();
+        };
+        
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType("text/plain;charset=UTF-8"))
+            .body(body);
     }
 
     // Méthode avancée avec analyse NLP basique
-    // Cache pour éviter de recalculer les conversations
-    @Cacheable(value = "conversations", key = "#devisId")
+    // Agrégats maintenus incrémentalement à chaque nouveau message (voir ConversationAggregateStore)
     @GetMapping("/processed-conversation/{devisId}")
     public ResponseEntity<Map<String, Object>> getProcessedConversation(@PathVariable Long devisId) {
         try {
-            List<Message> messages = messageService.findByDevisId(devisId);
-            
-            // 1. Texte brut de la conversation
-            String rawText = messages.stream()
-                .map(Message::getContent)
-                .collect(Collectors.joining("\n"));
-            
-            // 2. Statistiques de base
-            Map<String, Object> stats = new HashMap<>();
-            stats.put("messageCount", messages.size());
-            stats.put("wordCount", rawText.split("\\s+").length);
-            stats.put("avgMessageLength", messages.stream()
-                .mapToInt(m -> m.getContent().length())
-                .average()
-                .orElse(0));
-            
-            // 3. Analyse de sentiment (exemple simple)
-            int positiveWords = countKeywords(rawText, Arrays.asList("bon", "excellent", "merci", "parfait", "super", "génial"));
-            int negativeWords = countKeywords(rawText, Arrays.asList("problème", "erreur", "mauvais", "difficile", "impossible"));
-            
-            stats.put("sentimentScore", messages.size() > 0 ? (positiveWords - negativeWords) / (double) messages.size() : 0);
-            
-            // 4. Mots-clés de négociation
-            int negotiationWords = countKeywords(rawText, Arrays.asList("prix", "remise", "réduction", "tarif", "coût"));
-            stats.put("negotiationIndicators", negotiationWords);
-            
-            // 5. Mots-clés d'objection
-            int objectionWords = countKeywords(rawText, Arrays.asList("cher", "budget", "réfléchir", "attendre", "comparer"));
-            stats.put("objectionIndicators", objectionWords);
-            
-            // 6. Délais de réponse moyens
-            try {
-                stats.put("avgResponseTime", messageService.calculerTempsReponseMoyen(devisId, null));
-            } catch (Exception e) {
-                stats.put("avgResponseTime", 0.0);
-            }
-            
-            return ResponseEntity.ok(Map.of(
-                "rawText", rawText,
-                "stats", stats
-            ));
-            
+            return ResponseEntity.ok(conversationAggregateStore.snapshot(devisId));
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
     }
-
-    // Méthode utilitaire pour compter les mots-clés
-    private int countKeywords(String text, List<String> keywords) {
-        return (int) keywords.stream()
-            .filter(keyword -> text.toLowerCase().contains(keyword.toLowerCase()))
-            .count();
-    }
-
-    // Version avec pagination pour les longues conversations
-    @GetMapping("/conversation-text/{devisId}")
-    public ResponseEntity<String> getConversationText(
-        @PathVariable Long devisId,
-        @RequestParam(defaultValue = "0") int page,
-        @RequestParam(defaultValue = "50") int size) {
-        
-        try {
-            // Récupération paginée des messages
-            List<Message> messages = messageService.findByDevisIdPaginated(devisId, page, size);
-            
-            // Formatage pour l'IA
-            String conversationText = messages.stream()
-                .filter(msg -> msg.getContent().length() > 5) // Filtrer les messages trop courts
-                .filter(msg -> !msg.getContent().startsWith("/")) // Exclure les commandes
-                .map(msg -> String.format("%s: %s", msg.getSenderName(), msg.getContent()))
-                .collect(Collectors.joining("\n"));
-            
-            return ResponseEntity.ok(conversationText);
-        } catch (Exception e) {
-            return ResponseEntity.internalServerError()
-                .body("Erreur lors de la récupération des messages");
-        }
-    }
 }
\ No newline at end of file
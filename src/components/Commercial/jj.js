@@ -164,65 +164,10 @@ const analyzeProbability = async () => {
       }
     }, 1000);
 
-    // Récupération des données client
-    const clientStats = await axios.get(
-      `http://localhost:8080/api/client-stats/${clientInfo.id}`,
-      { headers: { 'Authorization': `Bearer ${token}` } }
-    );
-
-    const clientUserResponse = await axios.get(
-      `http://localhost:8080/api/clients/${clientInfo.id}/user-id`,
-      { headers: { 'Authorization': `Bearer ${token}` } }
-    );
-    
-    const clientUserId = clientUserResponse.data;
-
-    const sessionResponse = await axios.get(
-      `http://localhost:8080/api/sessions/totalDuration/${clientUserId}`,
-      { headers: { 'Authorization': `Bearer ${token}` } }
-    );
-    
-    const tempsPasseMinutes = Math.round(sessionResponse.data / (1000 * 60));
-
-    let tempsReponseMessagerie = 2;
-    try {
-      const messageResponse = await axios.get(
-        `http://localhost:8080/api/messages/temps-reponse-moyen-client/${devis.id}?clientId=${clientInfo.id}`,
-        { headers: { 'Authorization': `Bearer ${token}` } }
-      );
-      tempsReponseMessagerie = Math.round(messageResponse.data);
-    } catch (error) {
-      console.warn('Impossible de récupérer le temps de réponse messagerie:', error);
-    }
-
-    const nbProduitsDevis = produits.length;
-    const nbProduitsDejaPurchased = produits.filter(p => purchaseCounts[p.id] > 0).length;
-    
-    let delaiTraitementHeures = 0;
-    if (devis && devis.createdAt) {
-        const currentTime = new Date();
-        const creationDate = new Date(devis.createdAt);
-        delaiTraitementHeures = Math.floor((currentTime - creationDate) / (1000 * 60 * 60));
-    }
-    
-    const modelData = {
-      totalCommandes: clientStats.data.totalCommandes,
-      totalDevis: clientStats.data.totalDevis,
-      totalMontantCommandes: clientStats.data.totalMontantCommandes,
-      nb_produits_devis: nbProduitsDevis,
-      nb_produits_deja_achetes: nbProduitsDejaPurchased,
-      temps_dans_application_min: tempsPasseMinutes,
-      temps_reponse_messagerie_min: tempsReponseMessagerie,
-      delai_traitement_devis_hrs: delaiTraitementHeures,
-      taux_conversion: clientStats.data.totalDevis > 0 ? (clientStats.data.totalCommandes / clientStats.data.totalDevis) * 100 : 0,
-      moyenne_montant_commande: clientStats.data.totalCommandes > 0 ? clientStats.data.totalMontantCommandes / clientStats.data.totalCommandes : 0,
-      ratio_produits_achetes: nbProduitsDevis > 0 ? nbProduitsDejaPurchased / nbProduitsDevis : 0
-    };
-
-    // Appel à l'API de prédiction
+    // Les agrégats du client et du devis sont complétés côté serveur
     const response = await axios.post(
       'http://localhost:8080/api/predictions/analyze',
-      modelData,
+      { devisId: devis.id },
       { 
         headers: { 
           'Authorization': `Bearer ${token}`,
@@ -230,6 +175,7 @@ const analyzeProbability = async () => {
         } 
       }
     );
+    const modelData = response.data.inputs;
 
     // Appel à l'API de négociation
     let negotiationData = null;
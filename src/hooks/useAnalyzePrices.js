@@ -1,42 +1,56 @@
 import { useState } from 'react';
 import axios from 'axios';
 
+// Mise en forme d'un résultat du serveur (prix déjà convertis en MAD)
+const toResult = (line) => ({
+  produitId: line.produitId,
+  marketPrices: {
+    min: line.marketPrices.min.toFixed(2),
+    max: line.marketPrices.max.toFixed(2),
+    average: line.marketPrices.average.toFixed(2)
+  },
+  suggestedPrice: line.suggestedPrice.toFixed(2),
+  suggestedDiscount: (line.suggestedDiscount ?? 0).toFixed(2),
+  offers: line.offers
+});
+
 export const useAnalyzePrices = () => {
   const [loading, setLoading] = useState(false);
   const [error, setError] = useState(null);
   const [results, setResults] = useState(null);
 
-  const analyzePrices = async (productName, currentPrice) => {
+  // Analyse de toutes les lignes d'un devis en une seule requête : [{ produitId, nom, prixUnitaire }]
+  const analyzeDevisPrices = async (lines) => {
     setLoading(true);
     setError(null);
     try {
-      // Appel à l'API eBay Search via notre backend
-      const response = await axios.get(`/api/products/search?query=${encodeURIComponent(productName)}`);
-      const ebayPrices = response.data.prices;
-
-      // Appel à l'API de taux de change pour convertir en MAD
-      const exchangeResponse = await axios.get('/api/exchange/rates');
-      const usdToMadRate = exchangeResponse.data.rates.MAD;
-
-      // Calcul des statistiques de prix
-      const prices = ebayPrices.map(price => price * usdToMadRate);
-      const averagePrice = prices.reduce((a, b) => a + b, 0) / prices.length;
-      const minPrice = Math.min(...prices);
-      const maxPrice = Math.max(...prices);
-
-      // Calcul des suggestions
-      const suggestedPrice = averagePrice * 0.9; // 10% en dessous de la moyenne
-      const suggestedDiscount = ((currentPrice - suggestedPrice) / currentPrice) * 100;
-
-      setResults({
-        marketPrices: {
-          min: minPrice.toFixed(2),
-          max: maxPrice.toFixed(2),
-          average: averagePrice.toFixed(2)
-        },
-        suggestedPrice: suggestedPrice.toFixed(2),
-        suggestedDiscount: Math.max(0, suggestedDiscount).toFixed(2)
+      const response = await axios.post('http://localhost:8080/api/products/analyze-prices', lines);
+      const analyzed = {};
+      response.data.results.forEach(line => {
+        analyzed[line.produitId] = line.marketPrices ? toResult(line) : null;
       });
+      setResults(analyzed);
+      return analyzed;
+    } catch (err) {
+      setError(err.message);
+      return null;
+    } finally {
+      setLoading(false);
+    }
+  };
+
+  const analyzePrices = async (productName, currentPrice) => {
+    setLoading(true);
+    setError(null);
+    try {
+      const response = await axios.post('http://localhost:8080/api/products/analyze-prices', [
+        { nom: productName, prixUnitaire: currentPrice }
+      ]);
+      const line = response.data.results[0];
+      if (!line || !line.marketPrices) {
+        throw new Error('Aucune offre trouvée sur le marché');
+      }
+      setResults(toResult(line));
     } catch (err) {
       setError(err.message);
     } finally {
@@ -44,5 +58,5 @@ export const useAnalyzePrices = () => {
     }
   };
 
-  return { analyzePrices, loading, error, results };
-};
\ No newline at end of file
+  return { analyzePrices, analyzeDevisPrices, loading, error, results };
+};
@@ -0,0 +1,125 @@
+package com.Sofimed.Controller;
+
+import com.Sofimed.Service.CartWriteBuffer;
+import com.Sofimed.Service.CartWriteBuffer.DeadLetter;
+import com.Sofimed.Service.CartWriteBuffer.PendingItem;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+@RestController
+@RequestMapping("/api/cart-items")
+@CrossOrigin(origins = "http://localhost:3000")
+public class CartItemController {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartItemController.class);
+
+    @Autowired
+    private CartWriteBuffer cartWriteBuffer;
+
+    // Modification d'un article : mise en tampon, écrite en base au prochain vidage
+    @PutMapping("/update-by-cart-product")
+    public ResponseEntity<?> updateByCartProduct(
+            @RequestParam Long cartId,
+            @RequestParam Long produitId,
+            @RequestParam(required = false) BigDecimal prixUnitaire,
+            @RequestParam(required = false) BigDecimal remisePourcentage,
+            @RequestParam(required = false) Integer quantity) {
+
+        Map<String, String> errors = validate(prixUnitaire, remisePourcentage, quantity);
+        if (!errors.isEmpty()) {
+            return ResponseEntity.badRequest().body(errors);
+        }
+
+        PendingItem item = cartWriteBuffer.update(cartId, produitId, prixUnitaire, remisePourcentage, quantity);
+        return ResponseEntity.ok(toMap(cartId, produitId, item));
+    }
+
+    @PutMapping("/batch-update")
+    public ResponseEntity<?> batchUpdate(@RequestBody List<Map<String, Object>> updates) {
+        List<Map<String, Object>> results = new ArrayList<>(updates.size());
+        Map<Integer, Map<String, String>> invalid = new LinkedHashMap<>();
+
+        for (int i = 0; i < updates.size(); i++) {
+            Map<String, Object> update = updates.get(i);
+            try {
+                Long cartId = Long.valueOf(update.get("cartId").toString());
+                Long produitId = Long.valueOf(update.get("produitId").toString());
+                BigDecimal prixUnitaire = decimal(update.get("prixUnitaire"));
+                BigDecimal remisePourcentage = decimal(update.get("remisePourcentage"));
+                Integer quantity = update.get("quantity") != null ? Integer.valueOf(update.get("quantity").toString()) : null;
+
+                Map<String, String> errors = validate(prixUnitaire, remisePourcentage, quantity);
+                if (!errors.isEmpty()) {
+                    invalid.put(i, errors);
+                    continue;
+                }
+                PendingItem item = cartWriteBuffer.update(cartId, produitId, prixUnitaire, remisePourcentage, quantity);
+                results.add(toMap(cartId, produitId, item));
+            } catch (NullPointerException | NumberFormatException e) {
+                invalid.put(i, Map.of("item", "cartId et produitId numériques obligatoires"));
+            }
+        }
+
+        if (!invalid.isEmpty()) {
+            logger.warn("Mise à jour groupée du panier: {} articles invalides", invalid.size());
+            return ResponseEntity.badRequest().body(Map.of("updated", results, "errors", invalid));
+        }
+        return ResponseEntity.ok(results);
+    }
+
+    // Écriture immédiate des modifications en attente d'un panier
+    @PostMapping("/flush/{cartId}")
+    public ResponseEntity<Void> flush(@PathVariable Long cartId) {
+        cartWriteBuffer.flush(cartId);
+        return ResponseEntity.noContent().build();
+    }
+
+    // Articles écartés du tampon après des échecs d'écriture répétés
+    @GetMapping("/dead-letters")
+    public ResponseEntity<Map<Long, DeadLetter>> deadLetters() {
+        return ResponseEntity.ok(cartWriteBuffer.deadLetters());
+    }
+
+    @PostMapping("/dead-letters/{cartId}/retry")
+    public ResponseEntity<Void> retryDeadLetter(@PathVariable Long cartId) {
+        return cartWriteBuffer.retryDeadLetter(cartId)
+            ? ResponseEntity.accepted().build()
+            : ResponseEntity.notFound().build();
+    }
+
+    private static Map<String, String> validate(BigDecimal prixUnitaire, BigDecimal remisePourcentage, Integer quantity) {
+        Map<String, String> errors = new HashMap<>();
+        if (prixUnitaire != null && prixUnitaire.signum() < 0) {
+            errors.put("prixUnitaire", "Doit être positif");
+        }
+        if (remisePourcentage != null
+                && (remisePourcentage.signum() < 0 || remisePourcentage.compareTo(BigDecimal.valueOf(100)) > 0)) {
+            errors.put("remisePourcentage", "Doit être compris entre 0 et 100");
+        }
+        if (quantity != null && quantity < 1) {
+            errors.put("quantity", "Doit être au moins 1");
+        }
+        return errors;
+    }
+
+    private static BigDecimal decimal(Object value) {
+        return value == null || value.toString().isBlank() ? null : new BigDecimal(value.toString().trim());
+    }
+
+    private static Map<String, Object> toMap(Long cartId, Long produitId, PendingItem item) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("cartId", cartId);
+        map.put("produitId", produitId);
+        map.put("prixUnitaire", item.prixUnitaire());
+        map.put("remisePourcentage", item.remisePourcentage());
+        map.put("quantity", item.quantity());
+        return map;
+    }
+}
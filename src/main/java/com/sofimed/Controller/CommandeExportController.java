@@ -0,0 +1,144 @@
+package com.Sofimed.Controller;
+
+import com.Sofimed.DTO.CommandeDTO;
+import com.Sofimed.Dao.CommandeProjectionDao;
+import com.Sofimed.Dao.ParticipantDao;
+import com.Sofimed.Service.WebSocketAuthService;
+import com.Sofimed.Service.WebSocketAuthService.WebSocketPrincipal;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+@RestController
+@RequestMapping("/api/commandes")
+@CrossOrigin(origins = "http://localhost:3000")
+public class CommandeExportController {
+
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int EXPORT_PAGE_SIZE = 500;
+
+    @Autowired
+    private CommandeProjectionDao commandeProjectionDao;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Vérification du jeton partagée avec les connexions STOMP
+    @Autowired
+    private WebSocketAuthService webSocketAuthService;
+
+    @Autowired
+    private ParticipantDao participantDao;
+
+    // Historique paginé par curseur : reprendre avec after = nextCursor
+    @GetMapping("/history")
+    public ResponseEntity<Map<String, Object>> getHistory(
+            @RequestParam(required = false) Long clientId,
+            @RequestParam(defaultValue = "0") long after,
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        HttpStatus denied = checkScope(authorization, clientId);
+        if (denied != null) {
+            return ResponseEntity.status(denied).build();
+        }
+        int pageSize = limit <= 0 ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+        List<CommandeDTO> page = commandeProjectionDao.findAfter(clientId, after, pageSize);
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("content", page);
+        body.put("nextCursor", page.size() == pageSize ? page.get(page.size() - 1).id() : null);
+        return ResponseEntity.ok(body);
+    }
+
+    /**
+     * Export complet de l'historique en NDJSON ou CSV, page par page : la mémoire reste
+     * constante quelle que soit la taille de l'historique. Compressé en gzip si le
+     * client l'accepte. Sans clientId, l'export couvre tous les clients et est réservé
+     * aux administrateurs.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(
+            @RequestParam(required = false) Long clientId,
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        HttpStatus denied = checkScope(authorization, clientId);
+        if (denied != null) {
+            return ResponseEntity.status(denied).build();
+        }
+
+        boolean csv = "csv".equalsIgnoreCase(format);
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+
+        StreamingResponseBody body = responseStream -> {
+            OutputStream out = gzip ? new GZIPOutputStream(responseStream, 8192) : responseStream;
+            if (csv) {
+                out.write(CommandeDTO.CSV_HEADER.getBytes(StandardCharsets.UTF_8));
+                out.write('\n');
+            }
+
+            long cursor = 0L;
+            List<CommandeDTO> page;
+            do {
+                page = commandeProjectionDao.findAfter(clientId, cursor, EXPORT_PAGE_SIZE);
+                for (CommandeDTO commande : page) {
+                    out.write(csv
+                        ? commande.toCsvLine().getBytes(StandardCharsets.UTF_8)
+                        : objectMapper.writeValueAsBytes(commande));
+                    out.write('\n');
+                    cursor = commande.id();
+                }
+                out.flush();
+            } while (page.size() == EXPORT_PAGE_SIZE);
+
+            if (out instanceof GZIPOutputStream gzipStream) {
+                gzipStream.finish();
+            }
+        };
+
+        String fileName = "commandes" + (clientId != null ? "-client-" + clientId : "") + (csv ? ".csv" : ".ndjson");
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+            .contentType(csv
+                ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                : MediaType.parseMediaType("application/x-ndjson"))
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+            .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
+    /**
+     * null si l'appelant peut lire les commandes demandées : un administrateur tout,
+     * un client les siennes, un commercial celles des clients dont il suit un devis.
+     */
+    private HttpStatus checkScope(String authorization, Long clientId) {
+        WebSocketPrincipal principal = webSocketAuthService.authenticate(authorization);
+        if (principal == null) {
+            return HttpStatus.UNAUTHORIZED;
+        }
+        if (principal.isAdmin()) {
+            return null;
+        }
+        if (clientId == null || principal.userId() == null
+                || !participantDao.canSeeClient(principal.userId(), clientId)) {
+            return HttpStatus.FORBIDDEN;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,112 @@
+package com.Sofimed.Controller;
+
+import com.Sofimed.Service.MarketPriceService;
+import com.Sofimed.Service.MarketPriceService.MarketAnalysis;
+import com.Sofimed.Service.MarketPriceService.Statistics;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.*;
+
+@RestController
+@RequestMapping("/api/products")
+@CrossOrigin(origins = "http://localhost:3000")
+public class MarketPriceController {
+
+    private static final int MAX_LINES = 200;
+    private static final int OFFERS_PER_LINE = 5;
+
+    @Autowired
+    private MarketPriceService marketPriceService;
+
+    // Comparaison d'un produit avec les offres du marché, prix dans la devise de l'application
+    @GetMapping("/compare")
+    public ResponseEntity<?> compare(@RequestParam String name,
+                                     @RequestParam(required = false) Double maxPrice) {
+        if (name.isBlank()) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Le nom du produit est obligatoire"));
+        }
+        MarketAnalysis analysis = marketPriceService.analyze(name, maxPrice);
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("currency", marketPriceService.currency());
+        body.put("statistics", analysis.statistics());
+        body.put("offers", analysis.offers());
+        body.put("allOffers", analysis.offers());
+        return ResponseEntity.ok(body);
+    }
+
+    /**
+     * Analyse de toutes les lignes d'un devis en une requête : corps
+     * {@code [{produitId, nom, prixUnitaire}, ...]}, une entrée de résultat par ligne.
+     */
+    @PostMapping("/analyze-prices")
+    public ResponseEntity<?> analyzePrices(@RequestBody List<Map<String, Object>> lines) {
+        if (lines.size() > MAX_LINES) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("message", "Au plus " + MAX_LINES + " produits par analyse"));
+        }
+
+        List<String> names = new ArrayList<>(lines.size());
+        for (Map<String, Object> line : lines) {
+            Object nom = line != null ? line.get("nom") : null;
+            names.add(nom != null ? nom.toString() : "");
+        }
+        Map<String, MarketAnalysis> analyses = marketPriceService.analyzeAll(names, null);
+
+        List<Map<String, Object>> results = new ArrayList<>(lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            Map<String, Object> line = lines.get(i) != null ? lines.get(i) : Map.of();
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("produitId", line.get("produitId"));
+            result.put("nom", names.get(i));
+            results.add(result);
+
+            MarketAnalysis analysis = analyses.get(MarketPriceService.normalize(names.get(i)));
+            if (analysis == null) {
+                result.put("error", "Nom du produit manquant");
+                continue;
+            }
+            Statistics statistics = analysis.statistics();
+            result.put("statistics", statistics);
+            result.put("offers", analysis.offers().subList(0, Math.min(OFFERS_PER_LINE, analysis.offers().size())));
+            if (statistics.totalOffers() == 0) {
+                continue;
+            }
+
+            double suggestedPrice = MarketPriceService.suggestedPrice(statistics);
+            result.put("marketPrices", Map.of(
+                "min", round(statistics.minPrice()),
+                "max", round(statistics.maxPrice()),
+                "average", round(statistics.averagePrice())));
+            result.put("suggestedPrice", round(suggestedPrice));
+
+            Double currentPrice = price(line.get("prixUnitaire"));
+            if (currentPrice != null && currentPrice > 0) {
+                result.put("suggestedDiscount", round(Math.max(0, (currentPrice - suggestedPrice) / currentPrice * 100)));
+            }
+        }
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("currency", marketPriceService.currency());
+        body.put("results", results);
+        return ResponseEntity.ok(body);
+    }
+
+    private static Double price(Object value) {
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        }
+        try {
+            return value != null ? Double.valueOf(value.toString().trim()) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
@@ -0,0 +1,39 @@
+package com.Sofimed.Controller;
+
+import com.Sofimed.Service.WebSocketAuthService;
+import com.Sofimed.Service.WebSocketAuthService.WebSocketPrincipal;
+import com.Sofimed.Service.WebSocketDispatcher;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.stereotype.Controller;
+
+import java.security.Principal;
+import java.util.Map;
+
+@Controller
+public class NotificationRelayController {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationRelayController.class);
+
+    @Autowired
+    private WebSocketAuthService webSocketAuthService;
+
+    @Autowired
+    private WebSocketDispatcher webSocketDispatcher;
+
+    // Notification envoyée par une page sur /app/notifications/{userId}, relayée sur le topic du destinataire
+    @MessageMapping("/notifications/{userId}")
+    public void relay(@DestinationVariable long userId, @Payload Map<String, Object> notification, Principal user) {
+        WebSocketPrincipal principal = user instanceof WebSocketPrincipal p ? p : null;
+        if (!webSocketAuthService.canNotify(principal, userId)) {
+            logger.warn("Notification refusée de {} vers l'utilisateur {}", user != null ? user.getName() : null, userId);
+            return;
+        }
+        webSocketDispatcher.publish("/topic/notifications/" + userId, notification);
+    }
+}
@@ -0,0 +1,247 @@
+package com.Sofimed.Controller;
+
+import com.Sofimed.Dao.ProduitCatalogDao;
+import com.Sofimed.Event.ProduitChangedEvent;
+import com.Sofimed.Model.Produit;
+import com.Sofimed.Service.ProductSearchIndex;
+import com.Sofimed.Service.ProductSearchIndex.SearchPage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+@RestController
+@RequestMapping("/api")
+@CrossOrigin(origins = "http://localhost:3000")
+public class ProduitController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProduitController.class);
+
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final String INDEXING_RETRY_SECONDS = "5";
+
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+
+    @Autowired
+    private ProduitCatalogDao produitCatalogDao;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${produits.upload-dir:uploads/produits}")
+    private String uploadDir;
+
+    // Catalogue filtré : page/size pour le catalogue client, after pour la pagination par curseur
+    @GetMapping("/produits")
+    public ResponseEntity<Map<String, Object>> getProduits(
+            @RequestParam(required = false) Long categorieId,
+            @RequestParam(required = false) Long marqueId,
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+
+        if (!productSearchIndex.isReady()) {
+            return indexing();
+        }
+        int pageSize = clamp(size);
+        Map<String, Object> body = new LinkedHashMap<>();
+
+        if (after != null) {
+            SearchPage result = productSearchIndex.search(q, marqueId, categorieId, after, pageSize);
+            body.put("content", result.content());
+            body.put("size", pageSize);
+            body.put("nextCursor", result.nextCursor());
+            return ResponseEntity.ok(body);
+        }
+
+        long[] ids = productSearchIndex.matchingIds(q, marqueId, categorieId);
+        int from = (int) Math.min((long) Math.max(page, 0) * pageSize, ids.length);
+        int to = Math.min(from + pageSize, ids.length);
+        body.put("content", productSearchIndex.produits(ids, from, to));
+        body.put("totalElements", ids.length);
+        body.put("totalPages", (ids.length + pageSize - 1) / pageSize);
+        body.put("number", page);
+        body.put("size", pageSize);
+        body.put("nextCursor", to < ids.length && to > 0 ? ids[to - 1] : null);
+        return ResponseEntity.ok(body);
+    }
+
+    @GetMapping("/produits/{id}")
+    public ResponseEntity<Produit> getProduit(@PathVariable Long id) {
+        return productSearchIndex.findById(id)
+            .or(() -> produitCatalogDao.findById(id))
+            .map(ResponseEntity::ok)
+            .orElse(ResponseEntity.notFound().build());
+    }
+
+    // Recherche de l'administration : liste simple, curseur suivant dans l'en-tête X-Next-Cursor
+    @GetMapping("/produits/search")
+    public ResponseEntity<List<Produit>> searchProduits(
+            @RequestParam("q") String q,
+            @RequestParam(defaultValue = "0") long after,
+            @RequestParam(defaultValue = "20") int limit) {
+        if (!productSearchIndex.isReady()) {
+            return indexing();
+        }
+        SearchPage result = productSearchIndex.search(q, null, null, after, clamp(limit));
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (result.nextCursor() != null) {
+            response.header("X-Next-Cursor", result.nextCursor().toString());
+        }
+        return response.body(result.content());
+    }
+
+    // Saisie semi-automatique du catalogue client
+    @GetMapping("/products/search")
+    public ResponseEntity<Map<String, Object>> typeahead(
+            @RequestParam(value = "query", required = false) String query,
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) Long marqueId,
+            @RequestParam(required = false) Long categorieId,
+            @RequestParam(defaultValue = "0") long after,
+            @RequestParam(defaultValue = "10") int limit) {
+        if (!productSearchIndex.isReady()) {
+            return indexing();
+        }
+        SearchPage result = productSearchIndex.search(query != null ? query : q, marqueId, categorieId,
+            after, clamp(limit));
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("content", result.content());
+        body.put("nextCursor", result.nextCursor());
+        return ResponseEntity.ok(body);
+    }
+
+    // Marques avec le nombre de produits correspondant aux filtres courants
+    @GetMapping("/marques")
+    public ResponseEntity<List<Map<String, Object>>> getMarques(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) Long categorieId) {
+        if (!productSearchIndex.isReady()) {
+            return indexing();
+        }
+        return ResponseEntity.ok(productSearchIndex.marqueFacets(q, categorieId));
+    }
+
+    // Catégories avec le nombre de produits correspondant aux filtres courants
+    @GetMapping("/categories")
+    public ResponseEntity<List<Map<String, Object>>> getCategories(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) Long marqueId) {
+        if (!productSearchIndex.isReady()) {
+            return indexing();
+        }
+        return ResponseEntity.ok(productSearchIndex.categorieFacets(q, marqueId));
+    }
+
+    @PostMapping(value = "/produits", consumes = "multipart/form-data")
+    public ResponseEntity<?> createProduit(
+            @RequestParam Map<String, String> fields,
+            @RequestParam(value = "image", required = false) MultipartFile image,
+            @RequestParam(value = "ficheTechnique", required = false) MultipartFile ficheTechnique) {
+        return saveProduit(new Produit(), fields, image, ficheTechnique);
+    }
+
+    @PutMapping(value = "/produits/{id}", consumes = "multipart/form-data")
+    public ResponseEntity<?> updateProduit(
+            @PathVariable Long id,
+            @RequestParam Map<String, String> fields,
+            @RequestParam(value = "image", required = false) MultipartFile image,
+            @RequestParam(value = "ficheTechnique", required = false) MultipartFile ficheTechnique) {
+        return produitCatalogDao.findById(id)
+            .<ResponseEntity<?>>map(produit -> saveProduit(produit, fields, image, ficheTechnique))
+            .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(Map.of("success", false, "message", "Produit introuvable")));
+    }
+
+    @DeleteMapping("/produits/{id}")
+    public ResponseEntity<Map<String, Object>> deleteProduit(@PathVariable Long id) {
+        if (!produitCatalogDao.delete(id)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(Map.of("success", false, "message", "Produit introuvable"));
+        }
+        eventPublisher.publishEvent(new ProduitChangedEvent(id, null));
+        return ResponseEntity.ok(Map.of("success", true, "message", "Produit supprimé"));
+    }
+
+    private ResponseEntity<?> saveProduit(Produit produit, Map<String, String> fields,
+                                          MultipartFile image, MultipartFile ficheTechnique) {
+        try {
+            produit.setNom(fields.get("nom"));
+            produit.setReference(fields.get("reference"));
+            produit.setSku(fields.get("sku"));
+            produit.setDescription(fields.get("description"));
+            produit.setStatut(fields.get("statut"));
+            produit.setMarque(produitCatalogDao.findMarque(parseId(fields.get("marqueId"))).orElse(null));
+            produit.setCategorie(produitCatalogDao.findCategorie(parseId(fields.get("categorieId"))).orElse(null));
+            produit.setDepartement(produitCatalogDao.findDepartement(parseId(fields.get("departementId"))).orElse(null));
+
+            if (image != null && !image.isEmpty()) {
+                produit.setImageUrl(store(image));
+            }
+            if (ficheTechnique != null && !ficheTechnique.isEmpty()) {
+                produit.setFicheTechnique(store(ficheTechnique));
+            }
+
+            Produit saved = produitCatalogDao.save(produit);
+            // Mise à jour immédiate de l'index de recherche
+            eventPublisher.publishEvent(new ProduitChangedEvent(saved.getId(), saved));
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("success", true);
+            body.put("message", "Produit enregistré");
+            body.put("produit", saved);
+            return ResponseEntity.ok(body);
+        } catch (IOException e) {
+            logger.error("Erreur lors de l'enregistrement des fichiers du produit", e);
+            return ResponseEntity.internalServerError()
+                .body(Map.of("success", false, "message", "Erreur lors de l'enregistrement des fichiers"));
+        }
+    }
+
+    // Index pas encore construit au démarrage : le client réessaie plutôt que d'afficher un catalogue vide
+    private static <T> ResponseEntity<T> indexing() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, INDEXING_RETRY_SECONDS)
+            .build();
+    }
+
+    private String store(MultipartFile file) throws IOException {
+        Path directory = Paths.get(uploadDir);
+        Files.createDirectories(directory);
+        String original = Paths.get(Objects.requireNonNullElse(file.getOriginalFilename(), "fichier")).getFileName().toString();
+        String fileName = UUID.randomUUID() + "_" + original;
+        Files.copy(file.getInputStream(), directory.resolve(fileName), StandardCopyOption.REPLACE_EXISTING);
+        return fileName;
+    }
+
+    private static Long parseId(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static int clamp(int size) {
+        return size <= 0 ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+    }
+}
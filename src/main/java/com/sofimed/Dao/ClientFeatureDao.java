@@ -0,0 +1,98 @@
+package com.Sofimed.Dao;
+
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Lectures en colonnes pour le chargement des agrégats du modèle commercial :
+ * devis par curseur, produits des paniers et durées de session, sans entités.
+ */
+@Repository
+public class ClientFeatureDao {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Devis d'ID strictement supérieur à afterId, avec leur client et leur date de création
+    public List<DevisRow> findDevisAfter(long afterId, int limit) {
+        List<Object[]> rows = entityManager.createQuery(
+                "SELECT d.id, c.id, d.createdAt FROM Devis d LEFT JOIN d.client c " +
+                "WHERE d.id > :afterId ORDER BY d.id ASC",
+                Object[].class)
+            .setParameter("afterId", afterId)
+            .setMaxResults(limit)
+            .getResultList();
+
+        List<DevisRow> devis = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            devis.add(new DevisRow((Long) row[0], (Long) row[1], (LocalDateTime) row[2]));
+        }
+        return devis;
+    }
+
+    // IDs des produits du panier de chaque devis demandé
+    public Map<Long, List<Long>> findProduitIds(Collection<Long> devisIds) {
+        if (devisIds.isEmpty()) {
+            return Map.of();
+        }
+        List<Object[]> rows = entityManager.createQuery(
+                "SELECT d.id, ci.produit.id FROM Devis d JOIN d.cart c, CartItem ci " +
+                "WHERE ci.cart = c AND d.id IN :devisIds",
+                Object[].class)
+            .setParameter("devisIds", devisIds)
+            .getResultList();
+
+        Map<Long, List<Long>> produitsByDevis = new HashMap<>();
+        for (Object[] row : rows) {
+            produitsByDevis.computeIfAbsent((Long) row[0], id -> new ArrayList<>()).add((Long) row[1]);
+        }
+        return produitsByDevis;
+    }
+
+    // Temps total passé dans l'application par client, en millisecondes
+    public Map<Long, Long> sumSessionDurationByClient() {
+        List<Object[]> rows = entityManager.createQuery(
+                "SELECT c.id, SUM(s.duration) FROM Session s, Client c WHERE s.user = c.user GROUP BY c.id",
+                Object[].class)
+            .getResultList();
+
+        Map<Long, Long> durations = new HashMap<>(rows.size() * 2);
+        for (Object[] row : rows) {
+            durations.put((Long) row[0], row[1] != null ? ((Number) row[1]).longValue() : 0L);
+        }
+        return durations;
+    }
+
+    public Optional<DevisRow> findDevis(Long devisId) {
+        return entityManager.createQuery(
+                "SELECT d.id, c.id, d.createdAt FROM Devis d LEFT JOIN d.client c WHERE d.id = :devisId",
+                Object[].class)
+            .setParameter("devisId", devisId)
+            .getResultList()
+            .stream()
+            .findFirst()
+            .map(row -> new DevisRow((Long) row[0], (Long) row[1], (LocalDateTime) row[2]));
+    }
+
+    public long countDevisByClient(Long clientId) {
+        return entityManager.createQuery("SELECT COUNT(d) FROM Devis d WHERE d.client.id = :clientId", Long.class)
+            .setParameter("clientId", clientId)
+            .getSingleResult();
+    }
+
+    // Temps passé dans l'application par un client, en millisecondes
+    public long sumSessionDuration(Long clientId) {
+        Number total = entityManager.createQuery(
+                "SELECT SUM(s.duration) FROM Session s, Client c WHERE s.user = c.user AND c.id = :clientId",
+                Number.class)
+            .setParameter("clientId", clientId)
+            .getSingleResult();
+        return total != null ? total.longValue() : 0L;
+    }
+
+    public record DevisRow(Long id, Long clientId, LocalDateTime createdAt) {}
+}
@@ -0,0 +1,72 @@
+package com.Sofimed.Dao;
+
+import com.Sofimed.DTO.CommandeDTO;
+
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lecture des commandes en projection plate, paginée par curseur sur l'identifiant :
+ * seules des colonnes sont chargées, le contexte de persistance reste vide.
+ */
+@Repository
+public class CommandeProjectionDao {
+
+    private static final String SELECT =
+        "SELECT c.id, cl.id, co.id, d.id, c.totalHT, c.tauxTVA, c.status, c.dateLivraisonSouhaitee, c.notes " +
+        "FROM Commande c LEFT JOIN c.client cl LEFT JOIN c.commercial co LEFT JOIN c.devis d ";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Commandes d'ID strictement supérieur à afterId, toutes ou celles d'un client
+    public List<CommandeDTO> findAfter(Long clientId, long afterId, int limit) {
+        String jpql = SELECT + (clientId != null
+            ? "WHERE cl.id = :clientId AND c.id > :afterId ORDER BY c.id ASC"
+            : "WHERE c.id > :afterId ORDER BY c.id ASC");
+        var query = entityManager.createQuery(jpql, Object[].class)
+            .setParameter("afterId", afterId)
+            .setMaxResults(limit);
+        if (clientId != null) {
+            query.setParameter("clientId", clientId);
+        }
+
+        List<Object[]> rows = query.getResultList();
+        List<CommandeDTO> commandes = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            commandes.add(new CommandeDTO(
+                (Long) row[0], (Long) row[1], (Long) row[2], (Long) row[3],
+                decimal(row[4]), decimal(row[5]),
+                row[6] != null ? row[6].toString() : null,
+                date(row[7]),
+                (String) row[8]));
+        }
+        return commandes;
+    }
+
+    private static BigDecimal decimal(Object value) {
+        if (value == null) {
+            return null;
+        }
+        return value instanceof BigDecimal decimal ? decimal : new BigDecimal(value.toString());
+    }
+
+    private static LocalDate date(Object value) {
+        if (value instanceof LocalDate localDate) {
+            return localDate;
+        }
+        if (value instanceof java.sql.Date sqlDate) {
+            return sqlDate.toLocalDate();
+        }
+        if (value instanceof java.util.Date utilDate) {
+            return new java.sql.Date(utilDate.getTime()).toLocalDate();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,74 @@
+package com.Sofimed.Dao;
+
+import com.Sofimed.Model.Message;
+
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lectures paginées par curseur (keyset) sur l'identifiant des messages : chaque page
+ * reprend après le dernier ID reçu, sans OFFSET ni chargement de tout le fil.
+ */
+@Repository
+public class MessageCursorDao {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Messages d'un devis d'ID strictement supérieur à afterId, du plus ancien au plus récent
+    public List<Message> findByDevisIdAfter(Long devisId, long afterId, int limit) {
+        return entityManager.createQuery(
+                "SELECT m FROM Message m WHERE m.devis.id = :devisId AND m.id > :afterId ORDER BY m.id ASC",
+                Message.class)
+            .setParameter("devisId", devisId)
+            .setParameter("afterId", afterId)
+            .setMaxResults(limit)
+            .getResultList();
+    }
+
+    // Messages d'un devis d'ID strictement inférieur à beforeId (ou les derniers si null), du plus récent au plus ancien
+    public List<Message> findByDevisIdBefore(Long devisId, Long beforeId, int limit) {
+        String jpql = beforeId == null
+            ? "SELECT m FROM Message m WHERE m.devis.id = :devisId ORDER BY m.id DESC"
+            : "SELECT m FROM Message m WHERE m.devis.id = :devisId AND m.id < :beforeId ORDER BY m.id DESC";
+        var query = entityManager.createQuery(jpql, Message.class)
+            .setParameter("devisId", devisId)
+            .setMaxResults(limit);
+        if (beforeId != null) {
+            query.setParameter("beforeId", beforeId);
+        }
+        return query.getResultList();
+    }
+
+    // Horodatage et interlocuteurs de tous les messages d'ID supérieur à afterId, sans charger les entités
+    public List<MessageTiming> findTimingsAfter(long afterId, int limit) {
+        List<Object[]> rows = entityManager.createQuery(
+                "SELECT m.id, d.id, m.senderId, m.timestamp, c.id, co.id, cu.id, cou.id FROM Message m " +
+                "JOIN m.devis d LEFT JOIN d.client c LEFT JOIN c.user cu " +
+                "LEFT JOIN d.commercial co LEFT JOIN co.user cou " +
+                "WHERE m.id > :afterId ORDER BY m.id ASC",
+                Object[].class)
+            .setParameter("afterId", afterId)
+            .setMaxResults(limit)
+            .getResultList();
+
+        List<MessageTiming> timings = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            timings.add(new MessageTiming((Long) row[0], (Long) row[1], (Long) row[2],
+                (LocalDateTime) row[3], (Long) row[4], (Long) row[5], (Long) row[6], (Long) row[7]));
+        }
+        return timings;
+    }
+
+    /**
+     * senderId est un identifiant d'utilisateur : il se compare à clientUserId et
+     * commercialUserId, pas aux identifiants d'entités clientId et commercialId.
+     */
+    public record MessageTiming(Long id, Long devisId, Long senderId, LocalDateTime timestamp,
+                                Long clientId, Long commercialId, Long clientUserId, Long commercialUserId) {}
+}
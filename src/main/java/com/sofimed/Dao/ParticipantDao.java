@@ -0,0 +1,92 @@
+package com.Sofimed.Dao;
+
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Identifiants d'utilisateurs (et non d'entités Client/Commercial) des interlocuteurs
+ * d'un devis, pour les contrôles d'accès et les statistiques de messagerie.
+ */
+@Repository
+public class ParticipantDao {
+
+    public static final long NONE = -1L;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // {userId du client, userId du commercial}, NONE pour un interlocuteur absent ; vide si le devis n'existe pas
+    public Optional<long[]> findUserIds(Long devisId) {
+        List<Object[]> rows = entityManager.createQuery(
+                "SELECT cu.id, mu.id FROM Devis d " +
+                "LEFT JOIN d.client c LEFT JOIN c.user cu " +
+                "LEFT JOIN d.commercial m LEFT JOIN m.user mu " +
+                "WHERE d.id = :devisId",
+                Object[].class)
+            .setParameter("devisId", devisId)
+            .getResultList();
+        if (rows.isEmpty()) {
+            return Optional.empty();
+        }
+        Object[] row = rows.get(0);
+        return Optional.of(new long[] {
+            row[0] != null ? (Long) row[0] : NONE,
+            row[1] != null ? (Long) row[1] : NONE
+        });
+    }
+
+    // Utilisateur correspondant au sujet d'un jeton (nom d'utilisateur ou e-mail)
+    public Optional<Long> findUserIdByLogin(String login) {
+        return entityManager.createQuery(
+                "SELECT u.id FROM User u WHERE u.username = :login OR u.email = :login", Long.class)
+            .setParameter("login", login)
+            .setMaxResults(1)
+            .getResultList()
+            .stream()
+            .findFirst();
+    }
+
+    public Optional<String> findRole(Long userId) {
+        return entityManager.createQuery("SELECT u.role FROM User u WHERE u.id = :userId", Object.class)
+            .setParameter("userId", userId)
+            .getResultList()
+            .stream()
+            .findFirst()
+            .map(Object::toString);
+    }
+
+    // Vrai si les deux utilisateurs sont client et commercial d'au moins un même devis
+    public boolean shareDevis(Long userId, Long otherUserId) {
+        Long count = entityManager.createQuery(
+                "SELECT COUNT(d) FROM Devis d JOIN d.client c JOIN d.commercial m " +
+                "WHERE (c.user.id = :a AND m.user.id = :b) OR (c.user.id = :b AND m.user.id = :a)",
+                Long.class)
+            .setParameter("a", userId)
+            .setParameter("b", otherUserId)
+            .getSingleResult();
+        return count > 0;
+    }
+
+    // Vrai si l'utilisateur est ce client, ou le commercial d'au moins un de ses devis
+    public boolean canSeeClient(Long userId, Long clientId) {
+        Long own = entityManager.createQuery(
+                "SELECT COUNT(c) FROM Client c WHERE c.id = :clientId AND c.user.id = :userId", Long.class)
+            .setParameter("clientId", clientId)
+            .setParameter("userId", userId)
+            .getSingleResult();
+        if (own > 0) {
+            return true;
+        }
+        Long followed = entityManager.createQuery(
+                "SELECT COUNT(d) FROM Devis d JOIN d.commercial m " +
+                "WHERE d.client.id = :clientId AND m.user.id = :userId", Long.class)
+            .setParameter("clientId", clientId)
+            .setParameter("userId", userId)
+            .getSingleResult();
+        return followed > 0;
+    }
+}
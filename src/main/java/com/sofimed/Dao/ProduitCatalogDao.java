@@ -0,0 +1,79 @@
+package com.Sofimed.Dao;
+
+import com.Sofimed.Model.Categorie;
+import com.Sofimed.Model.Departement;
+import com.Sofimed.Model.Marque;
+import com.Sofimed.Model.Produit;
+
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Accès au catalogue : chargement par curseur pour l'index de recherche et écritures
+ * unitaires depuis l'administration des produits.
+ */
+@Repository
+public class ProduitCatalogDao {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Produits d'ID strictement supérieur à afterId, marque et catégorie chargées dans la même requête
+    public List<Produit> findPageAfter(long afterId, int limit) {
+        return entityManager.createQuery(
+                "SELECT p FROM Produit p LEFT JOIN FETCH p.marque LEFT JOIN FETCH p.categorie " +
+                "LEFT JOIN FETCH p.departement WHERE p.id > :afterId ORDER BY p.id ASC",
+                Produit.class)
+            .setParameter("afterId", afterId)
+            .setMaxResults(limit)
+            .getResultList();
+    }
+
+    public List<Marque> findAllMarques() {
+        return entityManager.createQuery("SELECT m FROM Marque m ORDER BY m.nom", Marque.class).getResultList();
+    }
+
+    public List<Categorie> findAllCategories() {
+        return entityManager.createQuery("SELECT c FROM Categorie c ORDER BY c.nom", Categorie.class).getResultList();
+    }
+
+    public Optional<Produit> findById(Long id) {
+        return Optional.ofNullable(entityManager.find(Produit.class, id));
+    }
+
+    public Optional<Marque> findMarque(Long id) {
+        return id == null ? Optional.empty() : Optional.ofNullable(entityManager.find(Marque.class, id));
+    }
+
+    public Optional<Categorie> findCategorie(Long id) {
+        return id == null ? Optional.empty() : Optional.ofNullable(entityManager.find(Categorie.class, id));
+    }
+
+    public Optional<Departement> findDepartement(Long id) {
+        return id == null ? Optional.empty() : Optional.ofNullable(entityManager.find(Departement.class, id));
+    }
+
+    @Transactional
+    public Produit save(Produit produit) {
+        if (produit.getId() == null) {
+            entityManager.persist(produit);
+            return produit;
+        }
+        return entityManager.merge(produit);
+    }
+
+    @Transactional
+    public boolean delete(Long id) {
+        Produit produit = entityManager.find(Produit.class, id);
+        if (produit == null) {
+            return false;
+        }
+        entityManager.remove(produit);
+        return true;
+    }
+}
@@ -0,0 +1,34 @@
+package com.Sofimed.Dao;
+
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Comptage des messages non lus d'un destinataire, ventilé par devis, en une requête.
+ */
+@Repository
+public class UnreadMessageDao {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public Map<Long, Long> countUnreadByDevis(Long recipientId) {
+        List<Object[]> rows = entityManager.createQuery(
+                "SELECT m.devis.id, COUNT(m) FROM Message m " +
+                "WHERE m.recipientId = :recipientId AND m.read = false GROUP BY m.devis.id",
+                Object[].class)
+            .setParameter("recipientId", recipientId)
+            .getResultList();
+
+        Map<Long, Long> counts = new HashMap<>();
+        for (Object[] row : rows) {
+            counts.put((Long) row[0], (Long) row[1]);
+        }
+        return counts;
+    }
+}
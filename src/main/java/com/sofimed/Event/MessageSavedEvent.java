@@ -0,0 +1,8 @@
+package com.Sofimed.Event;
+
+import com.Sofimed.Model.Message;
+
+/**
+ * Publié par MessageController après l'enregistrement d'un nouveau message.
+ */
+public record MessageSavedEvent(Long devisId, Message message) {}
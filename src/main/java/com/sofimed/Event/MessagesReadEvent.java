@@ -0,0 +1,7 @@
+package com.Sofimed.Event;
+
+/**
+ * Publié par MessageController quand les messages d'un devis sont marqués comme lus,
+ * pour un destinataire donné ou pour tous ({@code recipientId} nul).
+ */
+public record MessagesReadEvent(Long devisId, Long recipientId) {}
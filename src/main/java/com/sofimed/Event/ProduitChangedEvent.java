@@ -0,0 +1,9 @@
+package com.Sofimed.Event;
+
+import com.Sofimed.Model.Produit;
+
+/**
+ * Publié après la création, la modification ou la suppression d'un produit
+ * ({@code produit} vaut {@code null} pour une suppression).
+ */
+public record ProduitChangedEvent(Long produitId, Produit produit) {}
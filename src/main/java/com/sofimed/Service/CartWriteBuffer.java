@@ -0,0 +1,302 @@
+package com.Sofimed.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tampon d'écriture différée des articles de panier.
+ *
+ * Les modifications successives d'un même couple panier/produit sont fusionnées en
+ * mémoire (la dernière valeur de chaque champ l'emporte), puis écrites par lots JDBC :
+ * une rafale de clics sur la quantité ou la remise ne produit qu'une écriture.
+ *
+ * Le vidage a lieu périodiquement, à l'arrêt, et avant toute lecture ou validation de
+ * commande qui dépend du panier ({@link #flush(Long)}, {@link #flushDevis(Long)},
+ * {@link #flushForCheckout(Long)}). Un verrou par panier garantit qu'une lecture attend la fin d'un
+ * vidage en cours.
+ *
+ * Un panier dont l'écriture échoue {@code cart.write-behind.max-attempts} fois de suite
+ * est retiré du tampon et conservé à part ({@link #deadLetters()}) pour ne plus bloquer
+ * les vidages suivants ; un article nouveau sans prix unitaire n'est jamais inséré.
+ */
+@Service
+public class CartWriteBuffer {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartWriteBuffer.class);
+
+    private static final int LOCK_STRIPES = 64;
+
+    private static final String UPDATE_SQL =
+        "UPDATE cart_item SET prix_unitaire = COALESCE(?, prix_unitaire), " +
+        "remise_pourcentage = COALESCE(?, remise_pourcentage), quantity = COALESCE(?, quantity) " +
+        "WHERE cart_id = ? AND produit_id = ?";
+    private static final String INSERT_SQL =
+        "INSERT INTO cart_item (cart_id, produit_id, prix_unitaire, remise_pourcentage, quantity) " +
+        "VALUES (?, ?, ?, ?, ?)";
+    private static final String DEVIS_CART_SQL = "SELECT cart_id FROM devis WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    // Articles en attente par panier ; la Map d'un panier n'est modifiée que sous compute()
+    private final Map<Long, Map<Long, PendingItem>> pendingByCart = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingItems = new AtomicInteger();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    private final int maxAttempts;
+    private final Map<Long, Integer> failedAttempts = new ConcurrentHashMap<>();
+    private final Map<Long, DeadLetter> deadLetters = new ConcurrentHashMap<>();
+    // Panier d'un devis, fixé à la création du devis
+    private final Map<Long, Long> cartByDevis = new ConcurrentHashMap<>();
+
+    private final Counter requestedCounter;
+    private final Counter coalescedCounter;
+    private final Counter rowsCounter;
+    private final Counter batchesCounter;
+    private final Counter deadLetteredCounter;
+
+    public CartWriteBuffer(JdbcTemplate jdbcTemplate,
+                           PlatformTransactionManager transactionManager,
+                           MeterRegistry meterRegistry,
+                           @Value("${cart.write-behind.max-attempts:5}") int maxAttempts) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxAttempts = maxAttempts;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+
+        Gauge.builder("cart.writes.pending", pendingItems::get)
+            .description("Articles de panier modifiés en attente d'écriture")
+            .register(meterRegistry);
+        this.requestedCounter = Counter.builder("cart.writes.requested")
+            .description("Modifications d'articles de panier reçues")
+            .register(meterRegistry);
+        this.coalescedCounter = Counter.builder("cart.writes.coalesced")
+            .description("Modifications fusionnées avec une modification en attente")
+            .register(meterRegistry);
+        this.rowsCounter = Counter.builder("cart.writes.rows")
+            .description("Lignes cart_item écrites en base")
+            .register(meterRegistry);
+        this.batchesCounter = Counter.builder("cart.writes.batches")
+            .description("Lots JDBC envoyés")
+            .register(meterRegistry);
+        this.deadLetteredCounter = Counter.builder("cart.writes.dead-lettered")
+            .description("Articles retirés du tampon après des échecs répétés ou refusés")
+            .register(meterRegistry);
+        Gauge.builder("cart.writes.dead-letters", deadLetters::size)
+            .description("Paniers en attente d'une reprise manuelle")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Enregistre une modification et renvoie l'état fusionné de l'article.
+     * Un champ {@code null} conserve la valeur précédente.
+     */
+    public PendingItem update(Long cartId, Long produitId, BigDecimal prixUnitaire,
+                              BigDecimal remisePourcentage, Integer quantity) {
+        requestedCounter.increment();
+        PendingItem update = new PendingItem(prixUnitaire, remisePourcentage, quantity);
+        PendingItem[] merged = new PendingItem[1];
+        pendingByCart.compute(cartId, (id, items) -> {
+            Map<Long, PendingItem> cartItems = items != null ? items : new HashMap<>();
+            merged[0] = cartItems.merge(produitId, update, PendingItem::mergedWith);
+            if (merged[0] != update) {
+                coalescedCounter.increment();
+            } else {
+                pendingItems.incrementAndGet();
+            }
+            return cartItems;
+        });
+        return merged[0];
+    }
+
+    // Vidage de fond ; les lectures et la validation de commande vident à la demande
+    @Scheduled(fixedDelayString = "${cart.write-behind.flush-ms:2000}")
+    public void flushPending() {
+        for (Long cartId : pendingByCart.keySet()) {
+            try {
+                flush(cartId);
+            } catch (RuntimeException e) {
+                // Déjà journalisé ; nouvel essai au prochain passage
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        flushPending();
+    }
+
+    // Vide le panier d'un devis ; sans effet si le devis n'a pas de panier
+    public void flushDevis(Long devisId) {
+        if (pendingByCart.isEmpty()) {
+            return;
+        }
+        Long cartId = cartIdOf(devisId);
+        if (cartId != null) {
+            flush(cartId);
+        }
+    }
+
+    /**
+     * Validation de commande : écrit le panier du devis et échoue plutôt que de laisser
+     * créer une commande sur un panier incomplet. {@link IncompleteCartException} si des
+     * articles du panier sont écartés du tampon ; toute autre exception signale un échec
+     * d'écriture, les articles restant en attente.
+     */
+    public void flushForCheckout(Long devisId) {
+        Long cartId = cartIdOf(devisId);
+        if (cartId == null) {
+            return;
+        }
+        try {
+            flush(cartId);
+        } catch (RuntimeException e) {
+            if (deadLetters.containsKey(cartId)) {
+                throw new IncompleteCartException(cartId, e);
+            }
+            throw e;
+        }
+        if (deadLetters.containsKey(cartId)) {
+            throw new IncompleteCartException(cartId, null);
+        }
+    }
+
+    private Long cartIdOf(Long devisId) {
+        return cartByDevis.computeIfAbsent(devisId, id -> jdbcTemplate
+            .query(DEVIS_CART_SQL, (rs, row) -> rs.getObject(1) != null ? rs.getLong(1) : null, id)
+            .stream().filter(Objects::nonNull).findFirst().orElse(null));
+    }
+
+    public Map<Long, DeadLetter> deadLetters() {
+        return Collections.unmodifiableMap(deadLetters);
+    }
+
+    // Remet en attente les articles d'un panier écarté, après correction
+    public boolean retryDeadLetter(Long cartId) {
+        DeadLetter deadLetter = deadLetters.remove(cartId);
+        if (deadLetter == null) {
+            return false;
+        }
+        deadLetter.items().forEach((produitId, item) ->
+            update(cartId, produitId, item.prixUnitaire(), item.remisePourcentage(), item.quantity()));
+        return true;
+    }
+
+    public void flush(Long cartId) {
+        synchronized (locks[Math.floorMod(cartId.hashCode(), LOCK_STRIPES)]) {
+            Map<Long, PendingItem> items = pendingByCart.remove(cartId);
+            if (items == null || items.isEmpty()) {
+                return;
+            }
+            pendingItems.addAndGet(-items.size());
+            try {
+                Map<Long, PendingItem> rejected = new HashMap<>();
+                transactionTemplate.executeWithoutResult(status -> write(cartId, items, rejected));
+                failedAttempts.remove(cartId);
+                if (!rejected.isEmpty()) {
+                    deadLetter(cartId, rejected, "Article nouveau sans prix unitaire");
+                }
+            } catch (RuntimeException e) {
+                int attempts = failedAttempts.merge(cartId, 1, Integer::sum);
+                if (attempts >= maxAttempts) {
+                    failedAttempts.remove(cartId);
+                    deadLetter(cartId, items, e.getMessage());
+                    logger.error("Écriture du panier {} impossible après {} essais, {} articles écartés",
+                        cartId, attempts, items.size(), e);
+                    throw e;
+                }
+                // Remise en attente sans écraser les modifications arrivées entre-temps
+                pendingByCart.compute(cartId, (id, newer) -> {
+                    Map<Long, PendingItem> cartItems = newer != null ? newer : new HashMap<>();
+                    items.forEach((produitId, item) -> {
+                        PendingItem current = cartItems.get(produitId);
+                        cartItems.put(produitId, current != null ? item.mergedWith(current) : item);
+                        if (current == null) {
+                            pendingItems.incrementAndGet();
+                        }
+                    });
+                    return cartItems;
+                });
+                logger.error("Écriture du panier {} impossible, {} articles remis en attente", cartId, items.size(), e);
+                throw e;
+            }
+        }
+    }
+
+    private void deadLetter(Long cartId, Map<Long, PendingItem> items, String reason) {
+        deadLetters.merge(cartId, new DeadLetter(new HashMap<>(items), reason), (previous, added) -> {
+            Map<Long, PendingItem> merged = new HashMap<>(previous.items());
+            merged.putAll(added.items());
+            return new DeadLetter(merged, reason);
+        });
+        deadLetteredCounter.increment(items.size());
+        logger.warn("Panier {}: {} articles écartés du tampon ({})", cartId, items.size(), reason);
+    }
+
+    private void write(Long cartId, Map<Long, PendingItem> items, Map<Long, PendingItem> rejected) {
+        List<Long> produitIds = new ArrayList<>(items.keySet());
+        List<Object[]> updates = new ArrayList<>(produitIds.size());
+        for (Long produitId : produitIds) {
+            PendingItem item = items.get(produitId);
+            updates.add(new Object[] {item.prixUnitaire(), item.remisePourcentage(), item.quantity(), cartId, produitId});
+        }
+        int[] updated = jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+        batchesCounter.increment();
+
+        // Articles absents du panier : insertion dans un second lot, jamais sans prix
+        List<Object[]> inserts = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                PendingItem item = items.get(produitIds.get(i));
+                if (item.prixUnitaire() == null) {
+                    rejected.put(produitIds.get(i), item);
+                    continue;
+                }
+                inserts.add(new Object[] {cartId, produitIds.get(i), item.prixUnitaire(),
+                    item.remisePourcentage() != null ? item.remisePourcentage() : BigDecimal.ZERO,
+                    item.quantity() != null ? item.quantity() : 1});
+            }
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, inserts);
+            batchesCounter.increment();
+        }
+        rowsCounter.increment(items.size() - rejected.size());
+    }
+
+    public static class IncompleteCartException extends IllegalStateException {
+        public IncompleteCartException(Long cartId, Throwable cause) {
+            super("Panier " + cartId + " : articles écartés du tampon, à corriger avant validation", cause);
+        }
+    }
+
+    public record DeadLetter(Map<Long, PendingItem> items, String reason) {}
+
+    public record PendingItem(BigDecimal prixUnitaire, BigDecimal remisePourcentage, Integer quantity) {
+
+        PendingItem mergedWith(PendingItem newer) {
+            return new PendingItem(
+                newer.prixUnitaire != null ? newer.prixUnitaire : prixUnitaire,
+                newer.remisePourcentage != null ? newer.remisePourcentage : remisePourcentage,
+                newer.quantity != null ? newer.quantity : quantity);
+        }
+    }
+}
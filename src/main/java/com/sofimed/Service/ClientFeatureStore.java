@@ -0,0 +1,449 @@
+package com.Sofimed.Service;
+
+import com.Sofimed.DTO.CommandeDTO;
+import com.Sofimed.DTO.PredictionFeatures;
+import com.Sofimed.Dao.ClientFeatureDao;
+import com.Sofimed.Dao.ClientFeatureDao.DevisRow;
+import com.Sofimed.Dao.CommandeProjectionDao;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Agrégats du modèle commercial tenus en mémoire par client et par devis.
+ *
+ * Chaque client occupe une case dans des tableaux primitifs (commandes, devis,
+ * montant cumulé, temps passé dans l'application) ; les produits qu'il a déjà
+ * achetés forment un tableau trié d'IDs. Le vecteur d'entrées d'un devis ne demande
+ * donc qu'une requête, celle des produits actuels de son panier : produits déjà achetés
+ * par recherche dichotomique, délai de traitement depuis la date de création, délai de
+ * réponse via {@link ResponseTimeStats}.
+ *
+ * Les agrégats sont chargés au démarrage puis complétés toutes les
+ * {@code prediction.features.catch-up-ms} par les devis et commandes d'ID supérieur au
+ * dernier lu ; ils sont reconstruits périodiquement pour rattraper les durées de
+ * session. Un devis absent du magasin est calculé à la demande depuis la base.
+ */
+@Service
+public class ClientFeatureStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClientFeatureStore.class);
+
+    private static final int LOAD_PAGE_SIZE = 1000;
+    private static final int INITIAL_CAPACITY = 256;
+    private static final long[] EMPTY = new long[0];
+    // Valeur retenue par l'interface quand aucun délai de réponse n'est connu
+    private static final double DEFAULT_TEMPS_REPONSE_MIN = 2.0;
+
+    private static final int TOTAL_COMMANDES = field("totalCommandes");
+    private static final int TOTAL_DEVIS = field("totalDevis");
+    private static final int TOTAL_MONTANT = field("totalMontantCommandes");
+    private static final int NB_PRODUITS_DEVIS = field("nb_produits_devis");
+    private static final int NB_PRODUITS_ACHETES = field("nb_produits_deja_achetes");
+    private static final int TEMPS_APPLICATION = field("temps_dans_application_min");
+    private static final int TEMPS_REPONSE = field("temps_reponse_messagerie_min");
+    private static final int DELAI_TRAITEMENT = field("delai_traitement_devis_hrs");
+    private static final int TAUX_CONVERSION = field("taux_conversion");
+    private static final int MOYENNE_MONTANT = field("moyenne_montant_commande");
+    private static final int RATIO_ACHETES = field("ratio_produits_achetes");
+
+    private final ClientFeatureDao clientFeatureDao;
+    private final CommandeProjectionDao commandeProjectionDao;
+    private final ResponseTimeStats responseTimeStats;
+
+    private volatile Store current = new Store();
+
+    // Un seul chargement à la fois : reconstruction complète ou rattrapage
+    private final Object loadLock = new Object();
+    private boolean loading = false;
+
+    public ClientFeatureStore(ClientFeatureDao clientFeatureDao,
+                              CommandeProjectionDao commandeProjectionDao,
+                              ResponseTimeStats responseTimeStats,
+                              MeterRegistry meterRegistry) {
+        this.clientFeatureDao = clientFeatureDao;
+        this.commandeProjectionDao = commandeProjectionDao;
+        this.responseTimeStats = responseTimeStats;
+        Gauge.builder("predictions.features.clients", () -> current.slots.size())
+            .description("Clients présents dans le magasin d'agrégats du modèle")
+            .register(meterRegistry);
+        Gauge.builder("predictions.features.devis", () -> current.devisById.size())
+            .description("Devis présents dans le magasin d'agrégats du modèle")
+            .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        CompletableFuture.runAsync(this::rebuild).exceptionally(e -> {
+            logger.error("Chargement des agrégats clients impossible", e);
+            return null;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${prediction.features.rebuild-ms:3600000}",
+               initialDelayString = "${prediction.features.rebuild-ms:3600000}")
+    public void rebuild() {
+        if (!startLoading()) {
+            return;
+        }
+        try {
+            Store fresh = new Store();
+            // Les produits des devis sont connus : les achats se déduisent des commandes
+            loadDevis(fresh);
+            loadCommandes(fresh);
+            clientFeatureDao.sumSessionDurationByClient().forEach(fresh::setSessionMillis);
+            current = fresh;
+            logger.info("Agrégats clients chargés: {} clients, {} devis", fresh.slots.size(), fresh.devisById.size());
+        } finally {
+            endLoading();
+        }
+    }
+
+    // Devis et commandes créés depuis le dernier chargement, lus par curseur
+    @Scheduled(fixedDelayString = "${prediction.features.catch-up-ms:30000}",
+               initialDelayString = "${prediction.features.catch-up-ms:30000}")
+    public void catchUp() {
+        if (!startLoading()) {
+            return;
+        }
+        try {
+            Store store = current;
+            int devis = loadDevis(store);
+            int commandes = loadCommandes(store);
+            if (devis > 0 || commandes > 0) {
+                logger.debug("Agrégats clients rattrapés: {} devis, {} commandes", devis, commandes);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Rattrapage des agrégats clients impossible: {}", e.getMessage());
+        } finally {
+            endLoading();
+        }
+    }
+
+    private boolean startLoading() {
+        synchronized (loadLock) {
+            if (loading) {
+                return false;
+            }
+            loading = true;
+            return true;
+        }
+    }
+
+    private void endLoading() {
+        synchronized (loadLock) {
+            loading = false;
+        }
+    }
+
+    private int loadDevis(Store store) {
+        int loaded = 0;
+        List<DevisRow> devisPage;
+        do {
+            devisPage = clientFeatureDao.findDevisAfter(store.lastDevisId, LOAD_PAGE_SIZE);
+            List<Long> devisIds = new ArrayList<>(devisPage.size());
+            devisPage.forEach(row -> devisIds.add(row.id()));
+            Map<Long, List<Long>> produits = clientFeatureDao.findProduitIds(devisIds);
+            for (DevisRow row : devisPage) {
+                store.putDevis(row.id(), row.clientId(), epochMillis(row.createdAt()),
+                    produits.getOrDefault(row.id(), List.of()));
+            }
+            loaded += devisPage.size();
+        } while (devisPage.size() == LOAD_PAGE_SIZE);
+        return loaded;
+    }
+
+    private int loadCommandes(Store store) {
+        int loaded = 0;
+        List<CommandeDTO> commandePage;
+        do {
+            commandePage = commandeProjectionDao.findAfter(null, store.lastCommandeId, LOAD_PAGE_SIZE);
+            for (CommandeDTO commande : commandePage) {
+                store.addCommande(commande.id(), commande.clientId(), commande.devisId(), commande.totalHT());
+            }
+            loaded += commandePage.size();
+        } while (commandePage.size() == LOAD_PAGE_SIZE);
+        return loaded;
+    }
+
+    /**
+     * Vecteur d'entrées du devis dans l'ordre de {@link PredictionFeatures#NUMERIC_FIELDS},
+     * vide si le devis n'existe pas.
+     *
+     * Les produits du panier sont relus à chaque appel : une ligne modifiée depuis le
+     * dernier chargement est prise en compte. Un devis pas encore chargé (créé depuis le
+     * dernier rattrapage, ou magasin en cours de chargement) est lu seul en base avec les
+     * agrégats de son client, sans être ajouté au magasin.
+     */
+    public Optional<double[]> vector(Long devisId) {
+        try {
+            Store store = current;
+            DevisEntry devis = store.devisById.get(devisId);
+            ClientAggregates client;
+            if (devis != null) {
+                devis = refreshProduits(store, devisId, devis);
+                client = store.client(devis.clientId());
+            } else {
+                Optional<DevisRow> row = clientFeatureDao.findDevis(devisId);
+                if (row.isEmpty()) {
+                    return Optional.empty();
+                }
+                devis = new DevisEntry(row.get().clientId(), epochMillis(row.get().createdAt()), produitIds(devisId));
+                client = devis.clientId() != null && store.slots.containsKey(devis.clientId())
+                    ? store.client(devis.clientId())
+                    : loadClient(devis.clientId());
+            }
+            return Optional.of(values(devisId, devis, client));
+        } catch (RuntimeException e) {
+            logger.warn("Agrégats du devis {} indisponibles: {}", devisId, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private double[] values(Long devisId, DevisEntry devis, ClientAggregates client) {
+        double[] values = new double[PredictionFeatures.NUMERIC_FIELDS.size()];
+        values[TOTAL_COMMANDES] = client.commandes();
+        values[TOTAL_DEVIS] = client.devis();
+        values[TOTAL_MONTANT] = client.montant();
+        values[TEMPS_APPLICATION] = client.sessionMinutes();
+
+        int nbAchetes = 0;
+        for (long produitId : devis.produitIds()) {
+            if (Arrays.binarySearch(client.achetes(), produitId) >= 0) {
+                nbAchetes++;
+            }
+        }
+        values[NB_PRODUITS_DEVIS] = devis.produitIds().length;
+        values[NB_PRODUITS_ACHETES] = nbAchetes;
+
+        Map<String, Object> responseTimes = responseTimeStats.forDevis(devisId);
+        values[TEMPS_REPONSE] = ((Number) responseTimes.get("count")).longValue() > 0
+            ? Math.round(((Number) responseTimes.get("moyenneMinutes")).doubleValue())
+            : DEFAULT_TEMPS_REPONSE_MIN;
+        values[DELAI_TRAITEMENT] = devis.createdAtMillis() > 0
+            ? Math.max(0, (System.currentTimeMillis() - devis.createdAtMillis()) / 3_600_000L)
+            : 0;
+
+        values[TAUX_CONVERSION] = values[TOTAL_DEVIS] > 0 ? values[TOTAL_COMMANDES] / values[TOTAL_DEVIS] * 100 : 0;
+        values[MOYENNE_MONTANT] = values[TOTAL_COMMANDES] > 0 ? values[TOTAL_MONTANT] / values[TOTAL_COMMANDES] : 0;
+        values[RATIO_ACHETES] = devis.produitIds().length > 0 ? (double) nbAchetes / devis.produitIds().length : 0;
+        return values;
+    }
+
+    // Lignes actuelles du panier, reportées dans le magasin si elles ont changé
+    private DevisEntry refreshProduits(Store store, Long devisId, DevisEntry devis) {
+        long[] produitIds = produitIds(devisId);
+        if (Arrays.equals(produitIds, devis.produitIds())) {
+            return devis;
+        }
+        DevisEntry refreshed = new DevisEntry(devis.clientId(), devis.createdAtMillis(), produitIds);
+        store.devisById.replace(devisId, devis, refreshed);
+        return refreshed;
+    }
+
+    private long[] produitIds(Long devisId) {
+        return sortedIds(clientFeatureDao.findProduitIds(List.of(devisId)).getOrDefault(devisId, List.of()));
+    }
+
+    // Agrégats d'un client lus en base, pour un devis absent du magasin
+    private ClientAggregates loadClient(Long clientId) {
+        if (clientId == null) {
+            return ClientAggregates.NONE;
+        }
+        int commandes = 0;
+        double montant = 0;
+        List<Long> devisCommandes = new ArrayList<>();
+        long cursor = 0L;
+        List<CommandeDTO> page;
+        do {
+            page = commandeProjectionDao.findAfter(clientId, cursor, LOAD_PAGE_SIZE);
+            for (CommandeDTO commande : page) {
+                commandes++;
+                if (commande.totalHT() != null) {
+                    montant += commande.totalHT().doubleValue();
+                }
+                if (commande.devisId() != null) {
+                    devisCommandes.add(commande.devisId());
+                }
+                cursor = commande.id();
+            }
+        } while (page.size() == LOAD_PAGE_SIZE);
+
+        List<Long> achetes = new ArrayList<>();
+        clientFeatureDao.findProduitIds(devisCommandes).values().forEach(achetes::addAll);
+        return new ClientAggregates(commandes, clientFeatureDao.countDevisByClient(clientId), montant,
+            Math.round(clientFeatureDao.sumSessionDuration(clientId) / 60_000.0), sortedIds(achetes));
+    }
+
+    private static long[] sortedIds(List<Long> ids) {
+        return ids.stream().filter(Objects::nonNull).mapToLong(Long::longValue).sorted().distinct().toArray();
+    }
+
+    private static long epochMillis(LocalDateTime dateTime) {
+        return dateTime != null ? dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : 0L;
+    }
+
+    private static int field(String name) {
+        int index = PredictionFeatures.NUMERIC_FIELDS.indexOf(name);
+        if (index < 0) {
+            throw new IllegalStateException("Champ du modèle inconnu: " + name);
+        }
+        return index;
+    }
+
+    private record DevisEntry(Long clientId, long createdAtMillis, long[] produitIds) {}
+
+    private record ClientAggregates(int commandes, long devis, double montant, double sessionMinutes, long[] achetes) {
+        static final ClientAggregates NONE = new ClientAggregates(0, 0, 0, 0, EMPTY);
+    }
+
+    /**
+     * Agrégats d'un chargement complet. Un seul chargement écrit à la fois ; les
+     * lectures se font sans verrou.
+     */
+    private static final class Store {
+        final Map<Long, Integer> slots = new ConcurrentHashMap<>();
+        final Map<Long, DevisEntry> devisById = new ConcurrentHashMap<>();
+        volatile Columns columns = new Columns(INITIAL_CAPACITY);
+        // Devis et commandes lus par ID croissant : curseurs du prochain rattrapage
+        long lastDevisId = 0L;
+        // Une commande déjà comptée est ignorée
+        long lastCommandeId = 0L;
+
+        void putDevis(Long devisId, Long clientId, long createdAtMillis, List<Long> produitIds) {
+            if (devisId == null) {
+                return;
+            }
+            lastDevisId = Math.max(lastDevisId, devisId);
+            long[] ids = sortedIds(produitIds);
+            DevisEntry previous = devisById.put(devisId, new DevisEntry(clientId, createdAtMillis, ids));
+            if (previous == null && clientId != null) {
+                Columns target = columns(clientId);
+                target.devis[slots.get(clientId)]++;
+                publish(target);
+            }
+        }
+
+        void addCommande(Long commandeId, Long clientId, Long devisId, BigDecimal totalHT) {
+            if (commandeId == null || commandeId <= lastCommandeId) {
+                return;
+            }
+            lastCommandeId = commandeId;
+            if (clientId == null) {
+                return;
+            }
+
+            Columns target = columns(clientId);
+            int slot = slots.get(clientId);
+            target.commandes[slot]++;
+            if (totalHT != null) {
+                target.montant[slot] += totalHT.doubleValue();
+            }
+            DevisEntry devis = devisId != null ? devisById.get(devisId) : null;
+            if (devis != null && devis.produitIds().length > 0) {
+                target.achetes[slot] = union(target.achetes[slot], devis.produitIds());
+            }
+            publish(target);
+        }
+
+        void setSessionMillis(Long clientId, Long millis) {
+            Columns target = columns(clientId);
+            target.sessionMinutes[slots.get(clientId)] = Math.round(millis / 60_000.0);
+            publish(target);
+        }
+
+        // Agrégats du client ; la case est lue avant les colonnes pour voir un agrandissement éventuel
+        ClientAggregates client(Long clientId) {
+            Integer slot = clientId != null ? slots.get(clientId) : null;
+            Columns snapshot = columns;
+            if (slot == null) {
+                return ClientAggregates.NONE;
+            }
+            return new ClientAggregates(snapshot.commandes[slot], snapshot.devis[slot], snapshot.montant[slot],
+                snapshot.sessionMinutes[slot], snapshot.achetes[slot] != null ? snapshot.achetes[slot] : EMPTY);
+        }
+
+        // Colonnes contenant la case du client, agrandies au besoin avant de publier la case
+        private Columns columns(Long clientId) {
+            if (!slots.containsKey(clientId)) {
+                int slot = slots.size();
+                if (slot == columns.capacity()) {
+                    columns = columns.grow();
+                }
+                slots.put(clientId, slot);
+            }
+            return columns;
+        }
+
+        // Écriture volatile après les écritures dans les tableaux, pour les lecteurs suivants
+        private void publish(Columns target) {
+            columns = target;
+        }
+
+        private static long[] union(long[] current, long[] added) {
+            if (current == null || current.length == 0) {
+                return added.clone();
+            }
+            long[] merged = new long[current.length + added.length];
+            int i = 0, j = 0, n = 0;
+            while (i < current.length || j < added.length) {
+                long next;
+                if (j == added.length || (i < current.length && current[i] <= added[j])) {
+                    next = current[i++];
+                } else {
+                    next = added[j++];
+                }
+                if (n == 0 || merged[n - 1] != next) {
+                    merged[n++] = next;
+                }
+            }
+            return n == merged.length ? merged : Arrays.copyOf(merged, n);
+        }
+    }
+
+    // Une colonne par agrégat, indexée par la case du client
+    private static final class Columns {
+        final int[] commandes;
+        final int[] devis;
+        final double[] montant;
+        final double[] sessionMinutes;
+        final long[][] achetes;
+
+        Columns(int capacity) {
+            this(new int[capacity], new int[capacity], new double[capacity], new double[capacity], new long[capacity][]);
+        }
+
+        private Columns(int[] commandes, int[] devis, double[] montant, double[] sessionMinutes, long[][] achetes) {
+            this.commandes = commandes;
+            this.devis = devis;
+            this.montant = montant;
+            this.sessionMinutes = sessionMinutes;
+            this.achetes = achetes;
+        }
+
+        int capacity() {
+            return commandes.length;
+        }
+
+        Columns grow() {
+            int capacity = capacity() * 2;
+            return new Columns(Arrays.copyOf(commandes, capacity), Arrays.copyOf(devis, capacity),
+                Arrays.copyOf(montant, capacity), Arrays.copyOf(sessionMinutes, capacity),
+                Arrays.copyOf(achetes, capacity));
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.Sofimed.Service;
+
+import com.Sofimed.Dao.MessageCursorDao;
+import com.Sofimed.Event.MessageSavedEvent;
+import com.Sofimed.Model.Message;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Agrégats de conversation par devis (texte récent, compteurs de mots-clés, sentiment,
+ * délais de réponse), construits une fois depuis la base puis mis à jour message par
+ * message au lieu d'être recalculés sur toute la conversation.
+ *
+ * La taille est bornée par le budget de texte conservé par devis (les caractères les
+ * plus récents, {@code conversation.text.max-chars}) et par un poids mémoire total
+ * estimé, exposé dans la métrique {@code conversations.aggregate.bytes}.
+ */
+@Service
+public class ConversationAggregateStore {
+
+    // Indices des catégories dans les compteurs du KeywordMatcher
+    private static final int POSITIVE = 0;
+    private static final int NEGATIVE = 1;
+    private static final int NEGOTIATION = 2;
+    private static final int OBJECTION = 3;
+
+    private static final KeywordMatcher KEYWORDS = new KeywordMatcher(List.of(
+        List.of("bon", "excellent", "merci", "parfait", "super", "génial"),
+        List.of("problème", "erreur", "mauvais", "difficile", "impossible"),
+        List.of("prix", "remise", "réduction", "tarif", "coût"),
+        List.of("cher", "budget", "réfléchir", "attendre", "comparer")
+    ));
+
+    // Coût fixe estimé d'un agrégat (objet, compteurs, entrée du cache) hors texte
+    private static final int AGGREGATE_OVERHEAD_BYTES = 256;
+
+    private static final int LOAD_PAGE_SIZE = 500;
+
+    private final MessageCursorDao messageCursorDao;
+    private final Cache<Long, ConversationAggregate> aggregates;
+    private final int maxTextChars;
+    private final Timer loadTimer;
+
+    public ConversationAggregateStore(MessageCursorDao messageCursorDao,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${conversation.text.max-chars:5000}") int maxTextChars,
+                                      @Value("${conversation.aggregate.max-bytes:67108864}") long maxBytes) {
+        this.messageCursorDao = messageCursorDao;
+        this.maxTextChars = maxTextChars;
+        this.aggregates = Caffeine.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher((Long devisId, ConversationAggregate aggregate) -> aggregate.estimatedBytes())
+            .recordStats()
+            .build();
+        // Succès et défauts du cache servant /processed-conversation et l'enrichissement des prédictions
+        CaffeineCacheMetrics.monitor(meterRegistry, aggregates, "conversations.aggregate");
+        this.loadTimer = Timer.builder("conversations.aggregate.load")
+            .description("Chargement d'une conversation absente du cache")
+            .register(meterRegistry);
+        Gauge.builder("conversations.aggregate.bytes", aggregates,
+                cache -> cache.policy().eviction().map(e -> e.weightedSize().orElse(0)).orElse(0L))
+            .description("Mémoire estimée des agrégats de conversation")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Texte récent et statistiques de la conversation, au format de /processed-conversation.
+     */
+    public Map<String, Object> snapshot(Long devisId) {
+        return aggregates.get(devisId, id -> loadTimer.record(() -> load(id))).snapshot();
+    }
+
+    @EventListener
+    public void onMessageSaved(MessageSavedEvent event) {
+        // Atomique avec un chargement en cours du même devis : l'ajout attend le résultat
+        // du chargement, puis un message déjà lu en base est ignoré par son ID.
+        // Pas encore chargé : la prochaine lecture partira de la base, message inclus.
+        // Le retour de computeIfPresent déclenche une nouvelle pesée après croissance du texte.
+        aggregates.asMap().computeIfPresent(event.devisId(), (devisId, aggregate) -> {
+            aggregate.append(event.message());
+            return aggregate;
+        });
+    }
+
+    public void invalidate(Long devisId) {
+        aggregates.invalidate(devisId);
+    }
+
+    // Chargement initial page par page : seul le texte dans le budget est conservé
+    private ConversationAggregate load(Long devisId) {
+        ConversationAggregate aggregate = new ConversationAggregate(maxTextChars);
+        long cursor = 0L;
+        List<Message> page;
+        do {
+            page = messageCursorDao.findByDevisIdAfter(devisId, cursor, LOAD_PAGE_SIZE);
+            for (Message message : page) {
+                aggregate.append(message);
+                cursor = message.getId();
+            }
+        } while (page.size() == LOAD_PAGE_SIZE);
+        return aggregate;
+    }
+
+    private static int countWords(String text) {
+        int words = 0;
+        boolean inWord = false;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            boolean whitespace = Character.isWhitespace(text.charAt(i));
+            if (!whitespace && !inWord) {
+                words++;
+            }
+            inWord = !whitespace;
+        }
+        return words;
+    }
+
+    private static class ConversationAggregate {
+        private final int maxTextChars;
+        private final StringBuilder recentText = new StringBuilder();
+
+        private long lastMessageId = Long.MIN_VALUE;
+        private int messageCount;
+        private long wordCount;
+        private long totalLength;
+        private final int[] keywordCounts = new int[KEYWORDS.categoryCount()];
+
+        private Long lastSenderId;
+        private LocalDateTime lastTimestamp;
+        private double responseMinutesSum;
+        private int responseCount;
+
+        ConversationAggregate(int maxTextChars) {
+            this.maxTextChars = maxTextChars;
+        }
+
+        synchronized void append(Message message) {
+            // Un message déjà compté lors du chargement initial est ignoré
+            if (message.getId() != null) {
+                if (message.getId() <= lastMessageId) {
+                    return;
+                }
+                lastMessageId = message.getId();
+            }
+
+            String content = message.getContent() != null ? message.getContent() : "";
+
+            if (recentText.length() > 0) {
+                recentText.append('\n');
+            }
+            // Un message plus long que le budget n'est copié que pour sa fin
+            recentText.append(content, Math.max(0, content.length() - maxTextChars), content.length());
+            // Seuls les caractères les plus récents sont conservés
+            if (recentText.length() > maxTextChars) {
+                recentText.delete(0, recentText.length() - maxTextChars);
+            }
+
+            messageCount++;
+            wordCount += countWords(content);
+            totalLength += content.length();
+            // Une seule passe sur le message pour les quatre catégories de mots-clés
+            KEYWORDS.count(content, keywordCounts);
+
+            // Délai de réponse : écart avec le message précédent d'un autre interlocuteur
+            LocalDateTime timestamp = message.getTimestamp();
+            if (timestamp != null && lastTimestamp != null && lastSenderId != null
+                    && !lastSenderId.equals(message.getSenderId())) {
+                responseMinutesSum += Duration.between(lastTimestamp, timestamp).toSeconds() / 60.0;
+                responseCount++;
+            }
+            lastSenderId = message.getSenderId();
+            if (timestamp != null) {
+                lastTimestamp = timestamp;
+            }
+        }
+
+        synchronized Map<String, Object> snapshot() {
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("messageCount", messageCount);
+            stats.put("wordCount", wordCount);
+            stats.put("avgMessageLength", messageCount > 0 ? totalLength / (double) messageCount : 0);
+            stats.put("sentimentScore", messageCount > 0 
+                ? (keywordCounts[POSITIVE] - keywordCounts[NEGATIVE]) / (double) messageCount : 0);
+            stats.put("negotiationIndicators", keywordCounts[NEGOTIATION]);
+            stats.put("objectionIndicators", keywordCounts[OBJECTION]);
+            stats.put("avgResponseTime", responseCount > 0 ? responseMinutesSum / responseCount : 0.0);
+
+            return Map.of(
+                "rawText", recentText.toString(),
+                "stats", stats
+            );
+        }
+
+        synchronized int estimatedBytes() {
+            return AGGREGATE_OVERHEAD_BYTES + recentText.capacity() * 2;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.Sofimed.Service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Offres eBay via l'API Browse. Désactivable (market.sources.ebay.enabled=false),
+ * par exemple pour la remplacer par {@link StubPriceSource}.
+ */
+@Service
+@ConditionalOnProperty(name = "market.sources.ebay.enabled", havingValue = "true", matchIfMissing = true)
+public class EbayPriceSource implements MarketPriceSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(EbayPriceSource.class);
+
+    private static final String LOGO = "https://ir.ebaystatic.com/cr/v/c1/ebay-logo-1-1200x630-margin.png";
+
+    private final ObjectMapper objectMapper;
+    private final HttpClient httpClient;
+    private final String url;
+    private final String token;
+    private final String marketplace;
+    private final Duration timeout;
+
+    public EbayPriceSource(ObjectMapper objectMapper,
+                           @Value("${market.sources.ebay.url:https://api.ebay.com/buy/browse/v1/item_summary/search}") String url,
+                           @Value("${market.sources.ebay.token:}") String token,
+                           @Value("${market.sources.ebay.marketplace:EBAY_FR}") String marketplace,
+                           @Value("${market.sources.ebay.timeout-ms:3000}") long timeoutMs) {
+        this.objectMapper = objectMapper;
+        this.url = url;
+        this.token = token;
+        this.marketplace = marketplace;
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.httpClient = HttpClient.newBuilder()
+            .connectTimeout(this.timeout)
+            .build();
+        if (token.isBlank()) {
+            logger.warn("Aucun jeton eBay configuré (market.sources.ebay.token) : la source ne renverra aucune offre");
+        }
+    }
+
+    @Override
+    public String name() {
+        return "eBay";
+    }
+
+    @Override
+    public Duration timeout() {
+        return timeout;
+    }
+
+    @Override
+    public List<Offer> search(String query, int limit) throws IOException, InterruptedException {
+        if (token.isBlank()) {
+            return List.of();
+        }
+        HttpRequest request = HttpRequest.newBuilder()
+            .uri(URI.create(url + "?q=" + URLEncoder.encode(query, StandardCharsets.UTF_8) + "&limit=" + limit))
+            .header("Authorization", "Bearer " + token)
+            .header("X-EBAY-C-MARKETPLACE-ID", marketplace)
+            .timeout(timeout)
+            .GET()
+            .build();
+
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IOException("Réponse eBay inattendue: HTTP " + response.statusCode());
+        }
+
+        JsonNode items = objectMapper.readTree(response.body()).path("itemSummaries");
+        List<Offer> offers = new ArrayList<>(items.size());
+        for (JsonNode item : items) {
+            JsonNode price = item.path("price");
+            if (!price.hasNonNull("value")) {
+                continue;
+            }
+            offers.add(new Offer(
+                item.path("title").asText(""),
+                price.path("value").asDouble(),
+                price.path("currency").asText("EUR"),
+                name(),
+                item.path("itemWebUrl").asText(null),
+                LOGO));
+        }
+        return offers;
+    }
+}
@@ -0,0 +1,116 @@
+package com.Sofimed.Service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Taux de change par devise de base, en cache.
+ *
+ * Passé {@code exchange.rates.refresh-minutes}, le premier accès déclenche un
+ * rechargement en arrière-plan et reçoit encore l'ancienne valeur : aucune requête
+ * n'attend le fournisseur, sauf la toute première. Si le rechargement échoue, les
+ * taux précédents restent servis jusqu'à {@code exchange.rates.ttl-minutes}.
+ */
+@Service
+public class ExchangeRateService {
+
+    private final ObjectMapper objectMapper;
+    private final HttpClient httpClient;
+    private final String url;
+    private final Duration timeout;
+    private final LoadingCache<String, Map<String, Double>> ratesByBase;
+
+    public ExchangeRateService(ObjectMapper objectMapper,
+                               MeterRegistry meterRegistry,
+                               @Qualifier("marketLookupExecutor") ExecutorService marketLookupExecutor,
+                               @Value("${exchange.rates.url:https://open.er-api.com/v6/latest/{base}}") String url,
+                               @Value("${exchange.rates.refresh-minutes:30}") long refreshMinutes,
+                               @Value("${exchange.rates.ttl-minutes:360}") long ttlMinutes,
+                               @Value("${exchange.rates.timeout-ms:3000}") long timeoutMs) {
+        this.objectMapper = objectMapper;
+        this.url = url;
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.httpClient = HttpClient.newBuilder()
+            .connectTimeout(this.timeout)
+            .build();
+        this.ratesByBase = Caffeine.newBuilder()
+            .refreshAfterWrite(Duration.ofMinutes(refreshMinutes))
+            .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+            .executor(marketLookupExecutor)
+            .recordStats()
+            .build(this::load);
+        CaffeineCacheMetrics.monitor(meterRegistry, ratesByBase, "exchange.rates");
+    }
+
+    // Taux de toutes les devises pour 1 unité de la devise de base
+    public Map<String, Double> rates(String base) {
+        return ratesByBase.get(base.toUpperCase(Locale.ROOT));
+    }
+
+    public double convert(double amount, String from, String to) {
+        Double rate = rate(from, to);
+        if (rate == null) {
+            throw new IllegalStateException("Taux de change inconnu: " + from + " -> " + to);
+        }
+        return amount * rate;
+    }
+
+    /**
+     * Taux de {@code from} vers {@code to}, ou null si le fournisseur ne connaît pas
+     * l'une des devises. Un échec de chargement des taux est propagé, pas confondu
+     * avec une devise inconnue.
+     */
+    public Double rate(String from, String to) {
+        if (from.equalsIgnoreCase(to)) {
+            return 1.0;
+        }
+        return rates(from).get(to.toUpperCase(Locale.ROOT));
+    }
+
+    private Map<String, Double> load(String base) {
+        HttpRequest request = HttpRequest.newBuilder()
+            .uri(URI.create(url.replace("{base}", base)))
+            .timeout(timeout)
+            .GET()
+            .build();
+        try {
+            HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() != 200) {
+                throw new IOException("Réponse inattendue du service de change: HTTP " + response.statusCode());
+            }
+            JsonNode rates = objectMapper.readTree(response.body()).path("rates");
+            Map<String, Double> result = new HashMap<>(rates.size() * 2);
+            rates.fields().forEachRemaining(entry -> result.put(entry.getKey(), entry.getValue().asDouble()));
+            if (result.isEmpty()) {
+                throw new IOException("Aucun taux de change reçu pour " + base);
+            }
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Chargement des taux de change interrompu", e);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.Sofimed.Service;
+
+import java.util.*;
+
+/**
+ * Automate d'Aho–Corasick qui compte en une seule passe les occurrences de mots-clés
+ * de plusieurs catégories, sans tenir compte de la casse ni des accents.
+ *
+ * Le texte est parcouru caractère par caractère : aucune copie en minuscules ni
+ * allocation pendant la recherche. Seuls les mots entiers comptent (« bonjour » ne
+ * contient pas « bon ») : tout caractère non alphanumérique est lu comme un séparateur,
+ * une suite de séparateurs comme un seul, et chaque mot-clé est encadré de séparateurs
+ * dans l'automate. Le texte est lu comme s'il commençait et finissait par un séparateur.
+ */
+public final class KeywordMatcher {
+
+    private static final int ALPHABET = 128;
+    private static final char SEPARATOR = ' ';
+
+    private final int categoryCount;
+    // Transitions complètes (goto + échecs déjà résolus) : state * ALPHABET + caractère
+    private final int[] transitions;
+    // Occurrences par catégorie se terminant dans chaque état : state * categoryCount + catégorie
+    private final int[] outputs;
+
+    /**
+     * @param keywordsByCategory mots-clés, une liste par catégorie (l'indice de la liste
+     *                           est l'indice de la catégorie dans le tableau des compteurs)
+     */
+    public KeywordMatcher(List<List<String>> keywordsByCategory) {
+        this.categoryCount = keywordsByCategory.size();
+
+        List<int[]> gotoTable = new ArrayList<>();
+        List<int[]> outputTable = new ArrayList<>();
+        gotoTable.add(newRow());
+        outputTable.add(new int[categoryCount]);
+
+        for (int category = 0; category < categoryCount; category++) {
+            for (String keyword : keywordsByCategory.get(category)) {
+                String pattern = SEPARATOR + words(keyword) + SEPARATOR;
+                if (pattern.isBlank()) {
+                    throw new IllegalArgumentException("Mot-clé vide");
+                }
+                int state = 0;
+                for (int i = 0; i < pattern.length(); i++) {
+                    char c = pattern.charAt(i);
+                    if (c >= ALPHABET) {
+                        throw new IllegalArgumentException("Mot-clé non supporté: " + keyword);
+                    }
+                    if (gotoTable.get(state)[c] < 0) {
+                        gotoTable.get(state)[c] = gotoTable.size();
+                        gotoTable.add(newRow());
+                        outputTable.add(new int[categoryCount]);
+                    }
+                    state = gotoTable.get(state)[c];
+                }
+                outputTable.get(state)[category]++;
+            }
+        }
+
+        int stateCount = gotoTable.size();
+        this.transitions = new int[stateCount * ALPHABET];
+        this.outputs = new int[stateCount * categoryCount];
+        int[] failure = new int[stateCount];
+
+        // Parcours en largeur : liens d'échec et fusion des sorties
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < ALPHABET; c++) {
+            int next = gotoTable.get(0)[c];
+            if (next > 0) {
+                failure[next] = 0;
+                transitions[c] = next;
+                queue.add(next);
+            } else {
+                transitions[c] = 0;
+            }
+        }
+        System.arraycopy(outputTable.get(0), 0, outputs, 0, categoryCount);
+
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            int[] own = outputTable.get(state);
+            for (int k = 0; k < categoryCount; k++) {
+                outputs[state * categoryCount + k] = own[k] + outputs[failure[state] * categoryCount + k];
+            }
+            for (int c = 0; c < ALPHABET; c++) {
+                int next = gotoTable.get(state)[c];
+                if (next > 0) {
+                    failure[next] = transitions[failure[state] * ALPHABET + c];
+                    transitions[state * ALPHABET + c] = next;
+                    queue.add(next);
+                } else {
+                    transitions[state * ALPHABET + c] = transitions[failure[state] * ALPHABET + c];
+                }
+            }
+        }
+    }
+
+    /**
+     * Ajoute à {@code counts} le nombre d'occurrences trouvées dans {@code text} pour
+     * chaque catégorie.
+     */
+    public void count(CharSequence text, int[] counts) {
+        int state = transitions[SEPARATOR];
+        boolean afterSeparator = true;
+        for (int i = 0, length = text.length(); i <= length; i++) {
+            char c = i < length ? normalize(text.charAt(i)) : SEPARATOR;
+            if (c == SEPARATOR) {
+                if (afterSeparator) {
+                    continue;
+                }
+                afterSeparator = true;
+            } else {
+                afterSeparator = false;
+            }
+            state = c < ALPHABET ? transitions[state * ALPHABET + c] : 0;
+            int base = state * categoryCount;
+            for (int k = 0; k < categoryCount; k++) {
+                counts[k] += outputs[base + k];
+            }
+        }
+    }
+
+    public int categoryCount() {
+        return categoryCount;
+    }
+
+    // Mots du mot-clé normalisés, séparés par un seul séparateur
+    private static String words(String keyword) {
+        StringBuilder words = new StringBuilder(keyword.length());
+        for (int i = 0; i < keyword.length(); i++) {
+            char c = normalize(keyword.charAt(i));
+            if (c != SEPARATOR || (words.length() > 0 && words.charAt(words.length() - 1) != SEPARATOR)) {
+                words.append(c);
+            }
+        }
+        int end = words.length();
+        return end > 0 && words.charAt(end - 1) == SEPARATOR ? words.substring(0, end - 1) : words.toString();
+    }
+
+    // Caractère replié, ou séparateur s'il n'est ni lettre ni chiffre
+    private static char normalize(char c) {
+        char folded = fold(c);
+        return Character.isLetterOrDigit(folded) ? folded : SEPARATOR;
+    }
+
+    private static int[] newRow() {
+        int[] row = new int[ALPHABET];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    // Minuscule sans accent pour les caractères latins utilisés en français
+    static char fold(char c) {
+        if (c < ALPHABET) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        }
+        switch (Character.toLowerCase(c)) {
+            case 'à': case 'â': case 'ä': case 'á': return 'a';
+            case 'é': case 'è': case 'ê': case 'ë': return 'e';
+            case 'î': case 'ï': case 'í': return 'i';
+            case 'ô': case 'ö': case 'ó': return 'o';
+            case 'ù': case 'û': case 'ü': case 'ú': return 'u';
+            case 'ç': return 'c';
+            case 'ÿ': return 'y';
+            default: return c;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.Sofimed.Service;
+
+import com.Sofimed.Service.MarketPriceSource.Offer;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Analyse des prix du marché pour un ou plusieurs produits.
+ *
+ * Pour une liste de produits, toutes les recherches (produit × source) partent en
+ * même temps ; chaque source a son propre délai, une source lente ou en erreur ne
+ * retarde ni ne fait échouer les autres. Les offres, converties dans la devise de
+ * l'application, sont gardées en cache par produit : une même recherche relancée
+ * dans l'intervalle ne sollicite aucune source. Des requêtes simultanées pour une même
+ * recherche absente du cache partagent une seule interrogation des sources.
+ */
+@Service
+public class MarketPriceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MarketPriceService.class);
+
+    private static final int OFFERS_PER_SOURCE = 20;
+    // Prix suggéré : 10 % sous la moyenne du marché
+    private static final double SUGGESTED_RATIO = 0.9;
+
+    private final List<MarketPriceSource> sources;
+    private final ExchangeRateService exchangeRateService;
+    private final ExecutorService marketLookupExecutor;
+    private final String currency;
+    private final Cache<String, List<Offer>> offersByQuery;
+    // Recherches en cours, par recherche normalisée
+    private final Map<String, CompletableFuture<List<Offer>>> inFlight = new ConcurrentHashMap<>();
+
+    private final MeterRegistry meterRegistry;
+
+    public MarketPriceService(ObjectProvider<MarketPriceSource> sources,
+                              ExchangeRateService exchangeRateService,
+                              @Qualifier("marketLookupExecutor") ExecutorService marketLookupExecutor,
+                              MeterRegistry meterRegistry,
+                              @Value("${market.currency:MAD}") String currency,
+                              @Value("${market.cache.max-size:5000}") long maxSize,
+                              @Value("${market.cache.ttl-minutes:120}") long ttlMinutes) {
+        this.sources = sources.orderedStream().toList();
+        this.exchangeRateService = exchangeRateService;
+        this.marketLookupExecutor = marketLookupExecutor;
+        this.meterRegistry = meterRegistry;
+        this.currency = currency;
+        this.offersByQuery = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, offersByQuery, "market.offers");
+        logger.info("Sources de prix du marché actives: {}", this.sources.stream().map(MarketPriceSource::name).toList());
+    }
+
+    public String currency() {
+        return currency;
+    }
+
+    public MarketAnalysis analyze(String query, Double maxPrice) {
+        return analyzeAll(List.of(query), maxPrice).get(normalize(query));
+    }
+
+    /**
+     * Analyse de plusieurs produits en un seul passage ; résultat indexé par la
+     * recherche normalisée ({@link #normalize(String)}).
+     */
+    public Map<String, MarketAnalysis> analyzeAll(Collection<String> queries, Double maxPrice) {
+        Map<String, List<Offer>> offers = new HashMap<>();
+        Map<String, CompletableFuture<List<Offer>>> lookups = new HashMap<>();
+
+        for (String query : queries) {
+            String key = normalize(query);
+            if (key.isEmpty() || offers.containsKey(key) || lookups.containsKey(key)) {
+                continue;
+            }
+            List<Offer> cached = offersByQuery.getIfPresent(key);
+            if (cached != null) {
+                offers.put(key, cached);
+                continue;
+            }
+            lookups.put(key, shared(key, query.trim()));
+        }
+
+        // Chaque recherche est bornée par le délai de sa source : l'attente l'est aussi
+        lookups.forEach((key, lookup) -> offers.put(key, lookup.join()));
+
+        Map<String, MarketAnalysis> analyses = new HashMap<>(offers.size() * 2);
+        offers.forEach((key, found) -> analyses.put(key, MarketAnalysis.of(found, maxPrice)));
+        return analyses;
+    }
+
+    public static String normalize(String query) {
+        return query == null ? "" : query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    public static double suggestedPrice(Statistics statistics) {
+        return statistics.averagePrice() * SUGGESTED_RATIO;
+    }
+
+    // Recherche déjà en cours pour cette clé, ou nouvelle recherche partagée jusqu'à sa fin
+    private CompletableFuture<List<Offer>> shared(String key, String query) {
+        CompletableFuture<List<Offer>> created = new CompletableFuture<>();
+        CompletableFuture<List<Offer>> running = inFlight.putIfAbsent(key, created);
+        if (running != null) {
+            return running;
+        }
+        try {
+            searchAllSources(key, query).whenComplete((found, e) -> {
+                inFlight.remove(key, created);
+                if (e != null) {
+                    created.completeExceptionally(e);
+                } else {
+                    created.complete(found);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, created);
+            created.completeExceptionally(e);
+        }
+        return created;
+    }
+
+    private CompletableFuture<List<Offer>> searchAllSources(String key, String query) {
+        List<CompletableFuture<List<Offer>>> perSource = new ArrayList<>(sources.size());
+        for (MarketPriceSource source : sources) {
+            perSource.add(lookup(source, query));
+        }
+        return CompletableFuture.allOf(perSource.toArray(new CompletableFuture[0])).thenApply(done -> {
+            List<Offer> merged = new ArrayList<>();
+            boolean complete = true;
+            for (CompletableFuture<List<Offer>> lookup : perSource) {
+                List<Offer> found = lookup.join();
+                if (found == null) {
+                    complete = false;
+                } else {
+                    merged.addAll(found);
+                }
+            }
+            merged.sort(Comparator.comparingDouble(Offer::price));
+            List<Offer> result = List.copyOf(merged);
+            // Un résultat partiel (source en échec) n'est pas mis en cache
+            if (complete) {
+                offersByQuery.put(key, result);
+            }
+            return result;
+        });
+    }
+
+    // Offres converties de la source, ou null si elle a échoué ou dépassé son délai
+    private CompletableFuture<List<Offer>> lookup(MarketPriceSource source, String query) {
+        Timer timer = Timer.builder("market.source.latency")
+            .description("Durée d'une recherche d'offres par source")
+            .tag("source", source.name())
+            .register(meterRegistry);
+
+        return CompletableFuture.supplyAsync(() -> {
+                long start = System.nanoTime();
+                try {
+                    return convert(source.search(query, OFFERS_PER_SOURCE));
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                } finally {
+                    timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            }, marketLookupExecutor)
+            .orTimeout(source.timeout().toMillis(), TimeUnit.MILLISECONDS)
+            .exceptionally(e -> {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                if (cause instanceof TimeoutException) {
+                    failures(source, "timeout").increment();
+                    logger.warn("Source {} trop lente pour \"{}\" (> {} ms)", source.name(), query,
+                        source.timeout().toMillis());
+                } else {
+                    failures(source, "error").increment();
+                    logger.warn("Source {} en erreur pour \"{}\": {}", source.name(), query, cause.getMessage());
+                }
+                return null;
+            });
+    }
+
+    // Taux indisponibles : l'exception remonte et la source est comptée en échec, sans mise en cache
+    private List<Offer> convert(List<Offer> found) {
+        List<Offer> converted = new ArrayList<>(found.size());
+        for (Offer offer : found) {
+            String from = offer.currency() != null ? offer.currency() : currency;
+            Double rate = exchangeRateService.rate(from, currency);
+            if (rate == null) {
+                logger.debug("Offre ignorée, devise inconnue: {} -> {}", from, currency);
+                continue;
+            }
+            converted.add(offer.withPrice(offer.price() * rate, currency));
+        }
+        return converted;
+    }
+
+    private Counter failures(MarketPriceSource source, String reason) {
+        return Counter.builder("market.source.failures")
+            .description("Recherches d'offres abandonnées")
+            .tag("source", source.name())
+            .tag("reason", reason)
+            .register(meterRegistry);
+    }
+
+    public record Statistics(int totalOffers, double minPrice, double maxPrice, double averagePrice, double bestPrice) {
+
+        static final Statistics EMPTY = new Statistics(0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Offres d'un produit triées par prix croissant, et leurs statistiques.
+     */
+    public record MarketAnalysis(List<Offer> offers, Statistics statistics) {
+
+        static MarketAnalysis of(List<Offer> offers, Double maxPrice) {
+            List<Offer> kept = maxPrice == null ? offers
+                : offers.stream().filter(offer -> offer.price() <= maxPrice).toList();
+            if (kept.isEmpty()) {
+                return new MarketAnalysis(kept, Statistics.EMPTY);
+            }
+            double sum = 0;
+            for (Offer offer : kept) {
+                sum += offer.price();
+            }
+            double min = kept.get(0).price();
+            double max = kept.get(kept.size() - 1).price();
+            return new MarketAnalysis(kept, new Statistics(kept.size(), min, max, sum / kept.size(), min));
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.Sofimed.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Fournisseur d'offres du marché pour un produit. Toutes les sources déclarées comme
+ * beans sont interrogées en parallèle par {@link MarketPriceService}, chacune avec
+ * son propre délai maximal.
+ */
+public interface MarketPriceSource {
+
+    String name();
+
+    // Au-delà, la recherche est abandonnée et la source ne contribue aucune offre
+    default Duration timeout() {
+        return Duration.ofSeconds(3);
+    }
+
+    List<Offer> search(String query, int limit) throws IOException, InterruptedException;
+
+    /**
+     * Offre trouvée, prix exprimé dans la devise {@code currency}.
+     */
+    record Offer(String title, double price, String currency, String source, String link, String logo) {
+
+        public Offer withPrice(double convertedPrice, String convertedCurrency) {
+            return new Offer(title, convertedPrice, convertedCurrency, source, link, logo);
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package com.Sofimed.Service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Pool de processus Python longue durée pour le modèle commercial.
+ *
+ * Chaque worker lance {@code commercial_model.py --serve} une seule fois : le modèle
+ * est chargé au démarrage puis reste en mémoire. Le protocole est une trame JSON par
+ * ligne : une requête par ligne sur stdin, une réponse JSON par requête sur stdout.
+ */
+@Service
+public class ModelWorkerPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModelWorkerPool.class);
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${prediction.workers:4}")
+    private int workerCount;
+
+    @Value("${prediction.python:python}")
+    private String pythonExecutable;
+
+    @Value("${prediction.acquire-timeout-ms:5000}")
+    private long acquireTimeoutMs;
+
+    @Value("${prediction.deadline-ms:10000}")
+    private long deadlineMs;
+
+    @Value("${prediction.bulkhead.max-concurrent:32}")
+    private int maxConcurrent;
+
+    @Value("${prediction.respawn.initial-backoff-ms:1000}")
+    private long respawnInitialBackoffMs;
+
+    @Value("${prediction.respawn.max-backoff-ms:60000}")
+    private long respawnMaxBackoffMs;
+
+    @Autowired
+    @Qualifier("predictionIoExecutor")
+    private ExecutorService predictionIoExecutor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Semaphore bulkhead;
+    private Counter bulkheadRejected;
+    private Counter deadlineExceeded;
+    private Timer spawnTimer;
+    private Timer modelTimer;
+    private Timer parseTimer;
+
+    private BlockingQueue<ModelWorker> idleWorkers;
+    private final List<ModelWorker> allWorkers = Collections.synchronizedList(new ArrayList<>());
+    private volatile boolean shuttingDown = false;
+
+    @PostConstruct
+    public void start() throws IOException, InterruptedException {
+        bulkhead = new Semaphore(maxConcurrent);
+        Gauge.builder("predictions.bulkhead.available", bulkhead, Semaphore::availablePermits)
+            .description("Places libres dans le bulkhead des prédictions")
+            .register(meterRegistry);
+        bulkheadRejected = Counter.builder("predictions.bulkhead.rejected")
+            .description("Prédictions refusées car le bulkhead est plein")
+            .register(meterRegistry);
+        deadlineExceeded = Counter.builder("predictions.model.deadline.exceeded")
+            .description("Exécutions du modèle interrompues après dépassement du délai")
+            .register(meterRegistry);
+
+        spawnTimer = stageTimer("spawn");
+        modelTimer = stageTimer("model");
+        parseTimer = stageTimer("parse");
+
+        idleWorkers = new ArrayBlockingQueue<>(workerCount);
+        Gauge.builder("predictions.workers.idle", idleWorkers, BlockingQueue::size)
+            .register(meterRegistry);
+        for (int i = 0; i < workerCount; i++) {
+            idleWorkers.add(spawnWorker());
+        }
+        logger.info("{} workers de prédiction démarrés et préchauffés", workerCount);
+    }
+
+    /**
+     * Timer {@code predictions.stage} d'une étape, partagé avec le contrôleur. Les
+     * histogrammes sont activés par configuration (application-metrics.properties).
+     */
+    public Timer stageTimer(String stage) {
+        return Timer.builder("predictions.stage")
+            .description("Durée de chaque étape d'une prédiction")
+            .tag("stage", stage)
+            .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void stop() {
+        shuttingDown = true;
+        synchronized (allWorkers) {
+            allWorkers.forEach(ModelWorker::destroy);
+            allWorkers.clear();
+        }
+    }
+
+    /**
+     * Lecture d'une trame de réponse ; le parseur est positionné sur son premier jeton
+     * et doit être laissé sur le dernier jeton de la trame.
+     */
+    @FunctionalInterface
+    public interface FrameReader<T> {
+        T read(JsonParser parser) throws IOException;
+    }
+
+    /**
+     * Envoie une requête au premier worker libre et lit sa réponse directement depuis
+     * la sortie du processus, dans la limite de {@code prediction.deadline-ms}.
+     * Au-delà, l'arborescence du processus est tuée et le worker remplacé.
+     * Le nombre d'appels simultanés (en attente ou en cours) est borné par un bulkhead :
+     * au-delà, {@link RejectedExecutionException} est levée sans attendre.
+     */
+    public <T> T score(Object modelInput, FrameReader<T> reader) throws IOException, InterruptedException {
+        if (!bulkhead.tryAcquire()) {
+            bulkheadRejected.increment();
+            throw new RejectedExecutionException("Trop de prédictions simultanées");
+        }
+        try {
+            ModelWorker worker = idleWorkers.poll(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+            if (worker == null) {
+                throw new IllegalStateException("Aucun worker de prédiction disponible");
+            }
+
+            boolean healthy = false;
+            try {
+                T result = exchangeWithDeadline(worker, objectMapper.writeValueAsBytes(modelInput), reader);
+                healthy = true;
+                return result;
+            } finally {
+                release(worker, healthy);
+            }
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    // La lecture bloquante se fait sur l'exécuteur d'E/S ; l'appelant n'attend que jusqu'à l'échéance
+    private <T> T exchangeWithDeadline(ModelWorker worker, byte[] request, FrameReader<T> reader)
+            throws IOException, InterruptedException {
+        Future<T> exchange = predictionIoExecutor.submit(() -> worker.exchange(request, reader));
+        try {
+            return exchange.get(deadlineMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            deadlineExceeded.increment();
+            worker.destroy();
+            exchange.cancel(true);
+            throw new IOException("Délai d'exécution du modèle dépassé (" + deadlineMs + " ms)");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException("Erreur du worker Python: " + cause.getMessage(), cause);
+        }
+    }
+
+    private void release(ModelWorker worker, boolean healthy) {
+        if (healthy) {
+            idleWorkers.offer(worker);
+            return;
+        }
+        worker.destroy();
+        allWorkers.remove(worker);
+        if (shuttingDown) {
+            return;
+        }
+        // Remplacement (lancement + préchauffage) hors du thread de la requête
+        predictionIoExecutor.execute(() -> respawn(respawnInitialBackoffMs));
+    }
+
+    // Réessaie jusqu'au succès, avec un délai doublé à chaque échec : le pool revient à workerCount
+    private void respawn(long backoffMs) {
+        if (shuttingDown) {
+            return;
+        }
+        try {
+            ModelWorker worker = spawnWorker();
+            if (shuttingDown) {
+                worker.destroy();
+                return;
+            }
+            idleWorkers.offer(worker);
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            logger.error("Impossible de remplacer le worker de prédiction, nouvel essai dans {} ms", backoffMs, e);
+            long nextBackoffMs = Math.min(backoffMs * 2, respawnMaxBackoffMs);
+            try {
+                CompletableFuture.delayedExecutor(backoffMs, TimeUnit.MILLISECONDS, predictionIoExecutor)
+                    .execute(() -> respawn(nextBackoffMs));
+            } catch (RejectedExecutionException rejected) {
+                logger.warn("Remplacement du worker de prédiction abandonné: exécuteur arrêté");
+            }
+        }
+    }
+
+    private ModelWorker spawnWorker() throws IOException, InterruptedException {
+        Resource resource = new ClassPathResource("python/commercial_model.py");
+        File pythonFile = resource.getFile();
+
+        if (!pythonFile.exists()) {
+            throw new FileNotFoundException("Fichier Python introuvable: " + pythonFile.getAbsolutePath());
+        }
+
+        ProcessBuilder pb = new ProcessBuilder(pythonExecutable, pythonFile.getAbsolutePath(), "--serve");
+        pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+
+        long start = System.nanoTime();
+        ModelWorker worker = new ModelWorker(pb.start(), objectMapper.getFactory(), modelTimer, parseTimer);
+        allWorkers.add(worker);
+        try {
+            warmUp(worker);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            // Processus lancé mais inutilisable : il ne doit pas survivre à l'échec
+            worker.destroy();
+            allWorkers.remove(worker);
+            throw e;
+        }
+        // Lancement du processus et chargement du modèle (requête de préchauffage)
+        spawnTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return worker;
+    }
+
+    // Première requête à blanc pour charger le modèle avant le premier vrai appel
+    private void warmUp(ModelWorker worker) throws IOException, InterruptedException {
+        Map<String, Object> warmup = new HashMap<>();
+        warmup.put("warmup", true);
+        exchangeWithDeadline(worker, objectMapper.writeValueAsBytes(warmup), parser -> {
+            parser.skipChildren();
+            return null;
+        });
+    }
+
+    /**
+     * En mode --serve, stdout ne transporte que des trames JSON (les logs du script
+     * passent par stderr) : un seul parseur suit tout le flux du processus.
+     */
+    private static class ModelWorker {
+        private final Process process;
+        private final OutputStream stdin;
+        private final JsonParser stdout;
+        private final Timer modelTimer;
+        private final Timer parseTimer;
+
+        ModelWorker(Process process, JsonFactory jsonFactory, Timer modelTimer, Timer parseTimer) throws IOException {
+            this.process = process;
+            this.stdin = new BufferedOutputStream(process.getOutputStream());
+            this.stdout = jsonFactory.createParser(process.getInputStream());
+            this.modelTimer = modelTimer;
+            this.parseTimer = parseTimer;
+        }
+
+        <T> T exchange(byte[] request, FrameReader<T> reader) throws IOException {
+            long start = System.nanoTime();
+            stdin.write(request);
+            stdin.write('\n');
+            stdin.flush();
+
+            // Jusqu'au premier jeton : exécution du modèle ; ensuite : lecture de la trame
+            if (stdout.nextToken() == null) {
+                throw new EOFException("Le worker Python s'est arrêté (code " + exitCodeOrUnknown() + ")");
+            }
+            long firstToken = System.nanoTime();
+            modelTimer.record(firstToken - start, TimeUnit.NANOSECONDS);
+
+            T result = reader.read(stdout);
+            parseTimer.record(System.nanoTime() - firstToken, TimeUnit.NANOSECONDS);
+            return result;
+        }
+
+        private String exitCodeOrUnknown() {
+            return process.isAlive() ? "inconnu" : String.valueOf(process.exitValue());
+        }
+
+        // Le script peut avoir lancé ses propres sous-processus : toute l'arborescence est tuée
+        void destroy() {
+            process.descendants().forEach(ProcessHandle::destroyForcibly);
+            process.destroyForcibly();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.Sofimed.Service;
+
+import com.Sofimed.DTO.PredictionResponse;
+import com.Sofimed.Event.MessageSavedEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache borné des résultats du modèle, indexé par l'empreinte des entrées envoyées au
+ * modèle (champs numériques + texte et statistiques de conversation).
+ *
+ * Les entrées d'un devis sont évincées dès qu'un nouveau message y est enregistré.
+ */
+@Service
+public class PredictionCache {
+
+    private final ObjectMapper objectMapper;
+    private final Cache<String, CachedPrediction> cache;
+    private final Map<Long, Set<String>> keysByDevis = new ConcurrentHashMap<>();
+    private final Timer latencySaved;
+
+    public PredictionCache(ObjectMapper objectMapper,
+                           MeterRegistry meterRegistry,
+                           @Value("${prediction.cache.max-size:10000}") long maxSize,
+                           @Value("${prediction.cache.ttl-minutes:60}") long ttlMinutes) {
+        this.objectMapper = objectMapper;
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+            .removalListener((String key, CachedPrediction value, RemovalCause cause) -> {
+                // Une clé remplacée reste en cache : seule une éviction la retire de l'index
+                if (value != null && cause.wasEvicted()) {
+                    forgetKey(value.devisId(), key);
+                }
+            })
+            .recordStats()
+            .build();
+        this.latencySaved = Timer.builder("predictions.cache.latency.saved")
+            .description("Temps d'exécution du modèle évité grâce au cache")
+            .register(meterRegistry);
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "predictions");
+    }
+
+    /**
+     * Empreinte SHA-256 des entrées du modèle, indépendante de l'ordre des champs d'une Map
+     * (un vecteur typé est déjà sérialisé dans un ordre fixe), préfixée par le devis pour
+     * que l'éviction par devis reste exacte.
+     */
+    public String key(Long devisId, Object modelInput) {
+        try {
+            Object canonicalInput = modelInput instanceof Map<?, ?> map ? new TreeMap<>(map) : modelInput;
+            byte[] canonical = objectMapper.writeValueAsBytes(canonicalInput);
+            return devisId + ":" + HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(canonical));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Impossible de calculer l'empreinte de la prédiction", e);
+        }
+    }
+
+    public Optional<PredictionResponse> get(String key) {
+        CachedPrediction cached = cache.getIfPresent(key);
+        if (cached == null) {
+            return Optional.empty();
+        }
+        latencySaved.record(Duration.ofNanos(cached.computeNanos()));
+        return Optional.of(cached.response());
+    }
+
+    public void put(Long devisId, String key, PredictionResponse response, long computeNanos) {
+        if (devisId != null) {
+            keysByDevis.computeIfAbsent(devisId, id -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+        cache.put(key, new CachedPrediction(devisId, response, computeNanos));
+    }
+
+    public void invalidateDevis(Long devisId) {
+        Set<String> keys = keysByDevis.remove(devisId);
+        if (keys != null) {
+            cache.invalidateAll(keys);
+        }
+    }
+
+    @EventListener
+    public void onMessageSaved(MessageSavedEvent event) {
+        invalidateDevis(event.devisId());
+    }
+
+    private void forgetKey(Long devisId, String key) {
+        if (devisId == null) {
+            return;
+        }
+        keysByDevis.computeIfPresent(devisId, (id, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    private record CachedPrediction(Long devisId, PredictionResponse response, long computeNanos) {}
+}
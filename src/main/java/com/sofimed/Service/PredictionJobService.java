@@ -0,0 +1,135 @@
+package com.Sofimed.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Exécution asynchrone des prédictions sur un pool borné avec file d'attente.
+ *
+ * Une soumission renvoie immédiatement un job ; le résultat est poussé sur
+ * {@code /topic/predictions/{devisId}} et reste consultable quelques minutes.
+ * Deux soumissions identiques (même empreinte) pendant l'exécution partagent le même job.
+ * Quand la file est pleine, {@link RejectedExecutionException} est levée.
+ */
+@Service
+public class PredictionJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PredictionJobService.class);
+
+    private final WebSocketDispatcher webSocketDispatcher;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, PredictionJob> inFlight = new ConcurrentHashMap<>();
+    private final Cache<String, PredictionJob> jobs;
+
+    public PredictionJobService(WebSocketDispatcher webSocketDispatcher,
+                                @Value("${prediction.jobs.threads:4}") int threads,
+                                @Value("${prediction.jobs.queue-capacity:100}") int queueCapacity,
+                                @Value("${prediction.jobs.retention-minutes:10}") long retentionMinutes) {
+        this.webSocketDispatcher = webSocketDispatcher;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), new ThreadPoolExecutor.AbortPolicy());
+        this.jobs = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofMinutes(retentionMinutes))
+            .build();
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    public PredictionJob submit(Long devisId, String fingerprint, Callable<Map<String, Object>> task) {
+        PredictionJob[] created = new PredictionJob[1];
+        PredictionJob job = inFlight.computeIfAbsent(fingerprint, key -> {
+            created[0] = new PredictionJob(UUID.randomUUID().toString(), devisId);
+            return created[0];
+        });
+        if (created[0] == null) {
+            // Même prédiction déjà en cours : on rattache la demande au job existant
+            return job;
+        }
+
+        jobs.put(job.getId(), job);
+        try {
+            executor.execute(() -> run(job, fingerprint, task));
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(fingerprint);
+            jobs.invalidate(job.getId());
+            throw e;
+        }
+        return job;
+    }
+
+    public Optional<PredictionJob> find(String jobId) {
+        return Optional.ofNullable(jobs.getIfPresent(jobId));
+    }
+
+    private void run(PredictionJob job, String fingerprint, Callable<Map<String, Object>> task) {
+        job.status = JobStatus.RUNNING;
+        try {
+            job.result = task.call();
+            job.status = JobStatus.DONE;
+        } catch (Exception e) {
+            logger.error("Erreur lors de la prédiction asynchrone {}", job.getId(), e);
+            job.error = e.getMessage();
+            job.status = JobStatus.FAILED;
+        } finally {
+            inFlight.remove(fingerprint);
+        }
+
+        if (job.getDevisId() != null) {
+            webSocketDispatcher.publish("/topic/predictions/" + job.getDevisId(), job.toMap());
+        }
+    }
+
+    public enum JobStatus { PENDING, RUNNING, DONE, FAILED }
+
+    public static class PredictionJob {
+        private final String id;
+        private final Long devisId;
+        private volatile JobStatus status = JobStatus.PENDING;
+        private volatile Map<String, Object> result;
+        private volatile String error;
+
+        PredictionJob(String id, Long devisId) {
+            this.id = id;
+            this.devisId = devisId;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public Long getDevisId() {
+            return devisId;
+        }
+
+        public JobStatus getStatus() {
+            return status;
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("jobId", id);
+            map.put("devisId", devisId);
+            map.put("status", status.name());
+            if (result != null) {
+                map.put("result", result);
+            }
+            if (error != null) {
+                map.put("error", error);
+            }
+            return map;
+        }
+    }
+}
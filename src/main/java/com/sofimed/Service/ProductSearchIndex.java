@@ -0,0 +1,507 @@
+package com.Sofimed.Service;
+
+import com.Sofimed.Dao.ProduitCatalogDao;
+import com.Sofimed.Event.ProduitChangedEvent;
+import com.Sofimed.Model.Categorie;
+import com.Sofimed.Model.Marque;
+import com.Sofimed.Model.Produit;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Index inversé du catalogue, en mémoire.
+ *
+ * Chaque mot du nom, de la référence, du SKU, de la marque et de la catégorie est
+ * ramené en minuscules sans accents ; ses préfixes (jusqu'à {@value #MAX_PREFIX}
+ * caractères) pointent vers la liste triée des IDs de produits qui le contiennent.
+ * Une recherche intersecte ces listes en partant de la plus courte et reprend après
+ * le dernier ID renvoyé (pagination par curseur), sans accès à la base.
+ *
+ * L'index est construit au démarrage, tenu à jour à chaque {@link ProduitChangedEvent}
+ * et reconstruit périodiquement pour rattraper les modifications faites hors de l'API.
+ */
+@Service
+public class ProductSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductSearchIndex.class);
+
+    static final int MAX_PREFIX = 10;
+    private static final int LOAD_PAGE_SIZE = 1000;
+    private static final long[] EMPTY = new long[0];
+
+    private final ProduitCatalogDao produitCatalogDao;
+    private final Timer searchTimer;
+
+    private volatile Index current = new Index();
+    private volatile List<Marque> marques = List.of();
+    private volatile List<Categorie> categories = List.of();
+    private volatile boolean ready = false;
+
+    private final Object writeLock = new Object();
+    private final List<ProduitChangedEvent> pendingDuringRebuild = new ArrayList<>();
+    private boolean rebuilding = false;
+
+    public ProductSearchIndex(ProduitCatalogDao produitCatalogDao, MeterRegistry meterRegistry) {
+        this.produitCatalogDao = produitCatalogDao;
+        this.searchTimer = Timer.builder("catalog.search.latency")
+            .description("Durée d'une recherche dans l'index produits")
+            .register(meterRegistry);
+        Gauge.builder("catalog.index.products", () -> current.docs.size())
+            .description("Produits présents dans l'index de recherche")
+            .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        CompletableFuture.runAsync(this::rebuild).exceptionally(e -> {
+            logger.error("Construction de l'index produits impossible", e);
+            return null;
+        });
+    }
+
+    /**
+     * Vrai une fois la première construction terminée ; avant, l'index est vide
+     * et ne doit pas servir le catalogue.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Scheduled(fixedDelayString = "${catalog.index.rebuild-ms:900000}", initialDelayString = "${catalog.index.rebuild-ms:900000}")
+    public void rebuild() {
+        synchronized (writeLock) {
+            if (rebuilding) {
+                return;
+            }
+            rebuilding = true;
+        }
+        try {
+            Index fresh = new Index();
+            Map<String, LongList> postings = new HashMap<>();
+            Map<Long, LongList> byMarque = new HashMap<>();
+            Map<Long, LongList> byCategorie = new HashMap<>();
+            LongList allIds = new LongList();
+
+            // IDs croissants : chaque liste est remplie déjà triée
+            long cursor = 0L;
+            List<Produit> page;
+            do {
+                page = produitCatalogDao.findPageAfter(cursor, LOAD_PAGE_SIZE);
+                for (Produit produit : page) {
+                    Doc doc = Doc.of(produit);
+                    long id = produit.getId();
+                    fresh.docs.put(id, doc);
+                    allIds.add(id);
+                    for (String key : doc.keys()) {
+                        postings.computeIfAbsent(key, k -> new LongList()).add(id);
+                    }
+                    if (doc.marqueId() != null) {
+                        byMarque.computeIfAbsent(doc.marqueId(), k -> new LongList()).add(id);
+                    }
+                    if (doc.categorieId() != null) {
+                        byCategorie.computeIfAbsent(doc.categorieId(), k -> new LongList()).add(id);
+                    }
+                    cursor = id;
+                }
+            } while (page.size() == LOAD_PAGE_SIZE);
+
+            postings.forEach((key, ids) -> fresh.postings.put(key, ids.toArray()));
+            byMarque.forEach((key, ids) -> fresh.byMarque.put(key, ids.toArray()));
+            byCategorie.forEach((key, ids) -> fresh.byCategorie.put(key, ids.toArray()));
+            fresh.allIds = allIds.toArray();
+
+            List<Marque> freshMarques = produitCatalogDao.findAllMarques();
+            List<Categorie> freshCategories = produitCatalogDao.findAllCategories();
+
+            synchronized (writeLock) {
+                // Modifications reçues pendant le chargement, appliquées par-dessus
+                for (ProduitChangedEvent event : pendingDuringRebuild) {
+                    apply(fresh, event);
+                }
+                pendingDuringRebuild.clear();
+                current = fresh;
+                marques = freshMarques;
+                categories = freshCategories;
+                ready = true;
+            }
+            logger.info("Index produits construit: {} produits, {} préfixes", fresh.docs.size(), fresh.postings.size());
+        } finally {
+            synchronized (writeLock) {
+                rebuilding = false;
+                pendingDuringRebuild.clear();
+            }
+        }
+    }
+
+    @EventListener
+    public void onProduitChanged(ProduitChangedEvent event) {
+        synchronized (writeLock) {
+            apply(current, event);
+            if (rebuilding) {
+                pendingDuringRebuild.add(event);
+            }
+        }
+    }
+
+    public Optional<Produit> findById(Long id) {
+        Doc doc = current.docs.get(id);
+        return doc != null ? Optional.of(doc.produit()) : Optional.empty();
+    }
+
+    /**
+     * Produits correspondant à tous les mots de la requête et aux filtres, d'ID
+     * strictement supérieur à {@code afterId}, au plus {@code limit}.
+     */
+    public SearchPage search(String query, Long marqueId, Long categorieId, long afterId, int limit) {
+        long start = System.nanoTime();
+        try {
+            Index index = current;
+            Matcher matcher = matcher(index, query, marqueId, categorieId);
+            List<Produit> content = new ArrayList<>(Math.min(limit, 64));
+            if (matcher == null) {
+                return new SearchPage(content, null);
+            }
+
+            // Un résultat de plus que demandé pour savoir s'il existe une page suivante
+            long lastId = afterId;
+            boolean hasMore = false;
+            for (int i = firstAfter(matcher.driver, afterId); i < matcher.driver.length; i++) {
+                long id = matcher.driver[i];
+                if (matcher.matches(id)) {
+                    if (content.size() == limit) {
+                        hasMore = true;
+                        break;
+                    }
+                    content.add(index.docs.get(id).produit());
+                    lastId = id;
+                }
+            }
+            return new SearchPage(content, hasMore ? lastId : null);
+        } finally {
+            searchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Tous les IDs correspondants, triés ; sans requête ni filtre, la liste complète
+     * de l'index est renvoyée sans copie.
+     */
+    public long[] matchingIds(String query, Long marqueId, Long categorieId) {
+        Index index = current;
+        Matcher matcher = matcher(index, query, marqueId, categorieId);
+        if (matcher == null) {
+            return EMPTY;
+        }
+        if (matcher.others.length == 0 && matcher.longTokens.length == 0) {
+            return matcher.driver;
+        }
+        LongList ids = new LongList();
+        for (long id : matcher.driver) {
+            if (matcher.matches(id)) {
+                ids.add(id);
+            }
+        }
+        return ids.toArray();
+    }
+
+    public List<Produit> produits(long[] ids, int from, int to) {
+        Index index = current;
+        List<Produit> produits = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            Doc doc = index.docs.get(ids[i]);
+            if (doc != null) {
+                produits.add(doc.produit());
+            }
+        }
+        return produits;
+    }
+
+    /**
+     * Marques avec le nombre de produits correspondant à la requête et à la catégorie.
+     */
+    public List<Map<String, Object>> marqueFacets(String query, Long categorieId) {
+        Index index = current;
+        Map<Long, Integer> counts = isBlank(query) && categorieId == null
+            ? lengths(index.byMarque)
+            : countBy(index, matchingIds(query, null, categorieId), true);
+        List<Map<String, Object>> facets = new ArrayList<>(marques.size());
+        for (Marque marque : marques) {
+            facets.add(facet(marque.getId(), marque.getNom(), counts.getOrDefault(marque.getId(), 0)));
+        }
+        return facets;
+    }
+
+    /**
+     * Catégories avec le nombre de produits correspondant à la requête et à la marque.
+     */
+    public List<Map<String, Object>> categorieFacets(String query, Long marqueId) {
+        Index index = current;
+        Map<Long, Integer> counts = isBlank(query) && marqueId == null
+            ? lengths(index.byCategorie)
+            : countBy(index, matchingIds(query, marqueId, null), false);
+        List<Map<String, Object>> facets = new ArrayList<>(categories.size());
+        for (Categorie categorie : categories) {
+            facets.add(facet(categorie.getId(), categorie.getNom(), counts.getOrDefault(categorie.getId(), 0)));
+        }
+        return facets;
+    }
+
+    private static Map<String, Object> facet(Long id, String nom, int count) {
+        Map<String, Object> facet = new LinkedHashMap<>();
+        facet.put("id", id);
+        facet.put("nom", nom);
+        facet.put("count", count);
+        return facet;
+    }
+
+    private static Map<Long, Integer> lengths(Map<Long, long[]> lists) {
+        Map<Long, Integer> counts = new HashMap<>();
+        lists.forEach((id, ids) -> counts.put(id, ids.length));
+        return counts;
+    }
+
+    private static Map<Long, Integer> countBy(Index index, long[] ids, boolean byMarque) {
+        Map<Long, Integer> counts = new HashMap<>();
+        for (long id : ids) {
+            Doc doc = index.docs.get(id);
+            Long key = doc == null ? null : byMarque ? doc.marqueId() : doc.categorieId();
+            if (key != null) {
+                counts.merge(key, 1, Integer::sum);
+            }
+        }
+        return counts;
+    }
+
+    // Listes à intersecter, la plus courte en tête ; null si aucun résultat possible
+    private static Matcher matcher(Index index, String query, Long marqueId, Long categorieId) {
+        List<long[]> lists = new ArrayList<>();
+        List<String> longTokens = new ArrayList<>();
+        for (String token : tokenize(query)) {
+            long[] ids = index.postings.get(keyOf(token));
+            if (ids == null) {
+                return null;
+            }
+            lists.add(ids);
+            if (token.length() > MAX_PREFIX) {
+                longTokens.add(token);
+            }
+        }
+        if (marqueId != null) {
+            lists.add(index.byMarque.getOrDefault(marqueId, EMPTY));
+        }
+        if (categorieId != null) {
+            lists.add(index.byCategorie.getOrDefault(categorieId, EMPTY));
+        }
+        if (lists.isEmpty()) {
+            lists.add(index.allIds);
+        }
+        lists.sort(Comparator.comparingInt(ids -> ids.length));
+        return new Matcher(index, lists.get(0), lists.subList(1, lists.size()).toArray(new long[0][]),
+            longTokens.toArray(new String[0]));
+    }
+
+    private static int firstAfter(long[] ids, long afterId) {
+        int position = Arrays.binarySearch(ids, afterId);
+        return position >= 0 ? position + 1 : -position - 1;
+    }
+
+    private static void apply(Index index, ProduitChangedEvent event) {
+        Doc previous = index.docs.remove(event.produitId());
+        if (previous != null) {
+            long id = event.produitId();
+            for (String key : previous.keys()) {
+                index.postings.computeIfPresent(key, (k, ids) -> without(ids, id));
+            }
+            if (previous.marqueId() != null) {
+                index.byMarque.computeIfPresent(previous.marqueId(), (k, ids) -> without(ids, id));
+            }
+            if (previous.categorieId() != null) {
+                index.byCategorie.computeIfPresent(previous.categorieId(), (k, ids) -> without(ids, id));
+            }
+            long[] all = without(index.allIds, id);
+            index.allIds = all != null ? all : EMPTY;
+        }
+
+        if (event.produit() != null) {
+            Doc doc = Doc.of(event.produit());
+            long id = event.produitId();
+            index.docs.put(id, doc);
+            for (String key : doc.keys()) {
+                index.postings.merge(key, new long[] {id}, (ids, single) -> with(ids, id));
+            }
+            if (doc.marqueId() != null) {
+                index.byMarque.merge(doc.marqueId(), new long[] {id}, (ids, single) -> with(ids, id));
+            }
+            if (doc.categorieId() != null) {
+                index.byCategorie.merge(doc.categorieId(), new long[] {id}, (ids, single) -> with(ids, id));
+            }
+            index.allIds = with(index.allIds, id);
+        }
+    }
+
+    // Copie triée avec id inséré
+    private static long[] with(long[] ids, long id) {
+        int position = Arrays.binarySearch(ids, id);
+        if (position >= 0) {
+            return ids;
+        }
+        int insertAt = -position - 1;
+        long[] copy = new long[ids.length + 1];
+        System.arraycopy(ids, 0, copy, 0, insertAt);
+        copy[insertAt] = id;
+        System.arraycopy(ids, insertAt, copy, insertAt + 1, ids.length - insertAt);
+        return copy;
+    }
+
+    // Copie triée sans id ; null si la liste devient vide (l'entrée est alors retirée)
+    private static long[] without(long[] ids, long id) {
+        int position = Arrays.binarySearch(ids, id);
+        if (position < 0) {
+            return ids;
+        }
+        if (ids.length == 1) {
+            return null;
+        }
+        long[] copy = new long[ids.length - 1];
+        System.arraycopy(ids, 0, copy, 0, position);
+        System.arraycopy(ids, position + 1, copy, position, ids.length - position - 1);
+        return copy;
+    }
+
+    private static String keyOf(String token) {
+        return token.length() > MAX_PREFIX ? token.substring(0, MAX_PREFIX) : token;
+    }
+
+    private static boolean isBlank(String query) {
+        return query == null || query.isBlank();
+    }
+
+    // Mots en minuscules sans accents, séparés par tout caractère non alphanumérique
+    static List<String> tokenize(String... fields) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder token = new StringBuilder();
+        for (String field : fields) {
+            if (field == null) {
+                continue;
+            }
+            for (int i = 0; i <= field.length(); i++) {
+                char c = i < field.length() ? KeywordMatcher.fold(field.charAt(i)) : ' ';
+                if (Character.isLetterOrDigit(c)) {
+                    token.append(c);
+                } else if (token.length() > 0) {
+                    String word = token.toString();
+                    if (!tokens.contains(word)) {
+                        tokens.add(word);
+                    }
+                    token.setLength(0);
+                }
+            }
+        }
+        return tokens;
+    }
+
+    private record Doc(Produit produit, Long marqueId, Long categorieId, String[] tokens, String[] keys) {
+
+        static Doc of(Produit produit) {
+            Marque marque = produit.getMarque();
+            Categorie categorie = produit.getCategorie();
+            List<String> tokens = tokenize(produit.getNom(), produit.getReference(), produit.getSku(),
+                marque != null ? marque.getNom() : null, categorie != null ? categorie.getNom() : null);
+
+            Set<String> keys = new LinkedHashSet<>();
+            for (String token : tokens) {
+                for (int length = 1; length <= Math.min(token.length(), MAX_PREFIX); length++) {
+                    keys.add(token.substring(0, length));
+                }
+            }
+            return new Doc(produit, marque != null ? marque.getId() : null,
+                categorie != null ? categorie.getId() : null,
+                tokens.toArray(new String[0]), keys.toArray(new String[0]));
+        }
+
+        boolean hasTokenStartingWith(String prefix) {
+            for (String token : tokens) {
+                if (token.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class Matcher {
+        final Index index;
+        final long[] driver;
+        final long[][] others;
+        final String[] longTokens;
+
+        Matcher(Index index, long[] driver, long[][] others, String[] longTokens) {
+            this.index = index;
+            this.driver = driver;
+            this.others = others;
+            this.longTokens = longTokens;
+        }
+
+        boolean matches(long id) {
+            for (long[] ids : others) {
+                if (Arrays.binarySearch(ids, id) < 0) {
+                    return false;
+                }
+            }
+            if (longTokens.length > 0) {
+                // Au-delà de MAX_PREFIX, le préfixe indexé ne suffit pas : vérification sur le produit
+                Doc doc = index.docs.get(id);
+                if (doc == null) {
+                    return false;
+                }
+                for (String token : longTokens) {
+                    if (!doc.hasTokenStartingWith(token)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class Index {
+        final Map<Long, Doc> docs = new ConcurrentHashMap<>();
+        final Map<String, long[]> postings = new ConcurrentHashMap<>();
+        final Map<Long, long[]> byMarque = new ConcurrentHashMap<>();
+        final Map<Long, long[]> byCategorie = new ConcurrentHashMap<>();
+        volatile long[] allIds = EMPTY;
+    }
+
+    // Tableau de long extensible, sans boxing
+    private static final class LongList {
+        private long[] values = new long[8];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    public record SearchPage(List<Produit> content, Long nextCursor) {}
+}
@@ -0,0 +1,209 @@
+package com.Sofimed.Service;
+
+import com.Sofimed.Dao.MessageCursorDao;
+import com.Sofimed.Dao.MessageCursorDao.MessageTiming;
+import com.Sofimed.Dao.ParticipantDao;
+import com.Sofimed.Event.MessageSavedEvent;
+import com.Sofimed.Model.Devis;
+import com.Sofimed.Model.Message;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Délais de réponse agrégés au fil de l'eau par devis, par commercial et par client.
+ *
+ * Un délai est l'écart entre un message et le message précédent du même devis envoyé
+ * par un autre interlocuteur ; il est attribué à celui qui répond, reconnu en comparant
+ * l'expéditeur (un utilisateur) aux utilisateurs du client et du commercial. Les sommes,
+ * compteurs et histogrammes sont mis à jour à chaque message enregistré : la lecture
+ * d'un indicateur ne parcourt plus aucun fil de discussion.
+ *
+ * Au démarrage, l'historique est rejoué une fois page par page ; les messages reçus
+ * pendant ce rattrapage sont mis en attente puis appliqués dans l'ordre.
+ */
+@Service
+public class ResponseTimeStats {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResponseTimeStats.class);
+    private static final int BACKFILL_PAGE_SIZE = 1000;
+
+    private final MessageCursorDao messageCursorDao;
+    private final ParticipantDao participantDao;
+
+    private final Map<Long, LatencyStats> byDevis = new ConcurrentHashMap<>();
+    private final Map<Long, LatencyStats> byCommercial = new ConcurrentHashMap<>();
+    private final Map<Long, LatencyStats> byClient = new ConcurrentHashMap<>();
+    // Dernier message connu de chaque devis
+    private final Map<Long, MessageTiming> lastByDevis = new ConcurrentHashMap<>();
+    // {userId du client, userId du commercial} de chaque devis, fixés à sa création
+    private final Map<Long, long[]> participantsByDevis = new ConcurrentHashMap<>();
+
+    private final Queue<MessageTiming> pendingDuringBackfill = new ConcurrentLinkedQueue<>();
+    private volatile boolean ready = false;
+
+    public ResponseTimeStats(MessageCursorDao messageCursorDao, ParticipantDao participantDao) {
+        this.messageCursorDao = messageCursorDao;
+        this.participantDao = participantDao;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        CompletableFuture.runAsync(() -> {
+            long cursor = 0L;
+            List<MessageTiming> page;
+            do {
+                page = messageCursorDao.findTimingsAfter(cursor, BACKFILL_PAGE_SIZE);
+                for (MessageTiming timing : page) {
+                    record(timing);
+                    cursor = timing.id();
+                }
+            } while (page.size() == BACKFILL_PAGE_SIZE);
+
+            synchronized (this) {
+                ready = true;
+            }
+            MessageTiming pending;
+            while ((pending = pendingDuringBackfill.poll()) != null) {
+                record(pending);
+            }
+            logger.info("Délais de réponse initialisés jusqu'au message {}", cursor);
+        }).exceptionally(e -> {
+            logger.error("Initialisation des délais de réponse impossible", e);
+            return null;
+        });
+    }
+
+    @EventListener
+    public void onMessageSaved(MessageSavedEvent event) {
+        MessageTiming timing = toTiming(event.devisId(), event.message());
+        if (!ready) {
+            synchronized (this) {
+                if (!ready) {
+                    pendingDuringBackfill.add(timing);
+                    return;
+                }
+            }
+        }
+        record(timing);
+    }
+
+    public Map<String, Object> forDevis(Long devisId) {
+        return byDevis.getOrDefault(devisId, LatencyStats.EMPTY).toMap();
+    }
+
+    public Map<String, Object> forCommercial(Long commercialId) {
+        return byCommercial.getOrDefault(commercialId, LatencyStats.EMPTY).toMap();
+    }
+
+    public Map<String, Object> forClient(Long clientId) {
+        return byClient.getOrDefault(clientId, LatencyStats.EMPTY).toMap();
+    }
+
+    void record(MessageTiming timing) {
+        // compute() sérialise les messages d'un même devis ; les doublons (ID déjà vu) sont ignorés
+        lastByDevis.compute(timing.devisId(), (devisId, previous) -> {
+            if (previous != null && previous.id() != null && timing.id() != null && timing.id() <= previous.id()) {
+                return previous;
+            }
+            if (previous != null && previous.timestamp() != null && timing.timestamp() != null
+                    && !Objects.equals(previous.senderId(), timing.senderId())) {
+                double seconds = Duration.between(previous.timestamp(), timing.timestamp()).toMillis() / 1000.0;
+                if (seconds >= 0) {
+                    byDevis.computeIfAbsent(devisId, id -> new LatencyStats()).record(seconds);
+                    if (timing.senderId() != null && timing.commercialId() != null
+                            && timing.senderId().equals(timing.commercialUserId())) {
+                        byCommercial.computeIfAbsent(timing.commercialId(), id -> new LatencyStats()).record(seconds);
+                    } else if (timing.senderId() != null && timing.clientId() != null
+                            && timing.senderId().equals(timing.clientUserId())) {
+                        byClient.computeIfAbsent(timing.clientId(), id -> new LatencyStats()).record(seconds);
+                    }
+                }
+            }
+            return timing;
+        });
+    }
+
+    private MessageTiming toTiming(Long devisId, Message message) {
+        Devis devis = message.getDevis();
+        Long clientId = devis != null && devis.getClient() != null ? devis.getClient().getId() : null;
+        Long commercialId = devis != null && devis.getCommercial() != null ? devis.getCommercial().getId() : null;
+        long[] userIds = participantsByDevis.computeIfAbsent(devisId,
+            id -> participantDao.findUserIds(id).orElse(new long[] {ParticipantDao.NONE, ParticipantDao.NONE}));
+        return new MessageTiming(message.getId(), devisId, message.getSenderId(), message.getTimestamp(),
+            clientId, commercialId, userIdOrNull(userIds[0]), userIdOrNull(userIds[1]));
+    }
+
+    private static Long userIdOrNull(long userId) {
+        return userId != ParticipantDao.NONE ? userId : null;
+    }
+
+    /**
+     * Somme, nombre et histogramme logarithmique (4 classes par puissance de deux,
+     * environ 19 % d'erreur relative au plus) des délais en secondes, sans verrou.
+     */
+    private static class LatencyStats {
+        static final LatencyStats EMPTY = new LatencyStats();
+
+        private static final int BUCKETS = 128;
+        private static final int SUB_BUCKETS = 4;
+
+        private final LongAdder count = new LongAdder();
+        private final DoubleAdder sumSeconds = new DoubleAdder();
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        void record(double seconds) {
+            count.increment();
+            sumSeconds.add(seconds);
+            buckets.incrementAndGet(bucketOf(seconds));
+        }
+
+        private static int bucketOf(double seconds) {
+            if (seconds < 1) {
+                return 0;
+            }
+            int bucket = 1 + (int) Math.floor(Math.log(seconds) / Math.log(2) * SUB_BUCKETS);
+            return Math.min(bucket, BUCKETS - 1);
+        }
+
+        // Borne supérieure de la classe, en secondes
+        private static double upperBound(int bucket) {
+            return bucket == 0 ? 1 : Math.pow(2, bucket / (double) SUB_BUCKETS);
+        }
+
+        private double percentileMinutes(long total, double quantile) {
+            long rank = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    return upperBound(i) / 60.0;
+                }
+            }
+            return upperBound(BUCKETS - 1) / 60.0;
+        }
+
+        Map<String, Object> toMap() {
+            long total = count.sum();
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("count", total);
+            result.put("moyenneMinutes", total > 0 ? sumSeconds.sum() / total / 60.0 : 0.0);
+            result.put("p50Minutes", total > 0 ? percentileMinutes(total, 0.50) : 0.0);
+            result.put("p90Minutes", total > 0 ? percentileMinutes(total, 0.90) : 0.0);
+            result.put("p99Minutes", total > 0 ? percentileMinutes(total, 0.99) : 0.0);
+            return result;
+        }
+    }
+}
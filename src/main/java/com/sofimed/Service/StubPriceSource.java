@@ -0,0 +1,40 @@
+package com.Sofimed.Service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Source locale sans réseau, pour les tests et le développement : mêmes offres pour
+ * une même recherche. Activation : market.sources.stub.enabled=true (profil market-stub).
+ */
+@Service
+@ConditionalOnProperty(name = "market.sources.stub.enabled", havingValue = "true")
+public class StubPriceSource implements MarketPriceSource {
+
+    private static final int OFFERS = 5;
+
+    @Override
+    public String name() {
+        return "Stub";
+    }
+
+    @Override
+    public List<Offer> search(String query, int limit) {
+        String normalized = query.trim().toLowerCase(Locale.ROOT);
+        Random random = new Random(normalized.hashCode());
+        double base = 20 + random.nextInt(480);
+
+        List<Offer> offers = new ArrayList<>(OFFERS);
+        for (int i = 0; i < Math.min(OFFERS, limit); i++) {
+            double price = Math.round(base * (0.8 + random.nextDouble() * 0.4) * 100) / 100.0;
+            offers.add(new Offer(query + " - offre " + (i + 1), price, "EUR", name(),
+                "http://localhost/stub/offres/" + normalized.hashCode() + "/" + i, null));
+        }
+        return offers;
+    }
+}
@@ -0,0 +1,170 @@
+package com.Sofimed.Service;
+
+import com.Sofimed.Dao.UnreadMessageDao;
+import com.Sofimed.Event.MessageSavedEvent;
+import com.Sofimed.Event.MessagesReadEvent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compteurs de messages non lus par destinataire et par devis, tenus en mémoire.
+ *
+ * Un destinataire est chargé depuis la base à sa première lecture, puis ses compteurs
+ * suivent les événements d'envoi et de lecture : la lecture du total ne touche plus la
+ * base. Une réconciliation périodique recale les compteurs sur la base (source de
+ * vérité) et chaque changement est poussé sur {@code /topic/messages/unread/{userId}}.
+ * Chaque événement incrémente la version des compteurs du destinataire : un recalage
+ * dont la lecture en base a croisé un événement est abandonné jusqu'au passage suivant,
+ * plutôt que d'effacer cet événement.
+ */
+@Service
+public class UnreadCounterService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UnreadCounterService.class);
+
+    private final UnreadMessageDao unreadMessageDao;
+    private final WebSocketDispatcher webSocketDispatcher;
+
+    private final Map<Long, UserCounters> countersByUser = new ConcurrentHashMap<>();
+    // Destinataires chargés ayant des non lus sur chaque devis
+    private final Map<Long, Set<Long>> usersByDevis = new ConcurrentHashMap<>();
+
+    public UnreadCounterService(UnreadMessageDao unreadMessageDao, WebSocketDispatcher webSocketDispatcher) {
+        this.unreadMessageDao = unreadMessageDao;
+        this.webSocketDispatcher = webSocketDispatcher;
+    }
+
+    public long getTotal(Long userId) {
+        return countersByUser.computeIfAbsent(userId, this::load).total.sum();
+    }
+
+    @EventListener
+    public void onMessageSaved(MessageSavedEvent event) {
+        Long recipientId = event.message().getRecipientId();
+        UserCounters counters = recipientId != null ? countersByUser.get(recipientId) : null;
+        if (counters == null) {
+            // Destinataire pas encore chargé : sa première lecture partira de la base
+            return;
+        }
+        counters.add(event.devisId(), 1);
+        indexDevis(event.devisId(), recipientId);
+        push(recipientId, counters);
+    }
+
+    @EventListener
+    public void onMessagesRead(MessagesReadEvent event) {
+        if (event.recipientId() != null) {
+            clear(event.recipientId(), event.devisId());
+            return;
+        }
+        Set<Long> userIds = usersByDevis.remove(event.devisId());
+        if (userIds != null) {
+            userIds.forEach(userId -> clear(userId, event.devisId()));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${messages.unread.reconcile-ms:300000}")
+    public void reconcile() {
+        for (Map.Entry<Long, UserCounters> entry : countersByUser.entrySet()) {
+            Long userId = entry.getKey();
+            UserCounters counters = entry.getValue();
+            try {
+                long version = counters.version();
+                Map<Long, Long> counts = unreadMessageDao.countUnreadByDevis(userId);
+                counts.keySet().forEach(devisId -> indexDevis(devisId, userId));
+                if (counters.reconcile(version, counts)) {
+                    push(userId, counters);
+                }
+            } catch (Exception e) {
+                logger.warn("Réconciliation des non lus impossible pour l'utilisateur {}: {}", userId, e.getMessage());
+            }
+        }
+    }
+
+    private UserCounters load(Long userId) {
+        UserCounters counters = new UserCounters();
+        unreadMessageDao.countUnreadByDevis(userId).forEach((devisId, count) -> {
+            counters.add(devisId, count);
+            indexDevis(devisId, userId);
+        });
+        return counters;
+    }
+
+    private void clear(Long userId, Long devisId) {
+        UserCounters counters = countersByUser.get(userId);
+        if (counters != null && counters.clear(devisId) > 0) {
+            push(userId, counters);
+        }
+    }
+
+    private void indexDevis(Long devisId, Long userId) {
+        usersByDevis.computeIfAbsent(devisId, id -> ConcurrentHashMap.newKeySet()).add(userId);
+    }
+
+    private void push(Long userId, UserCounters counters) {
+        // Seul le dernier total d'une rafale est envoyé
+        webSocketDispatcher.publishLatest("/topic/messages/unread/" + userId, Map.of("total", counters.total.sum()));
+    }
+
+    // Écritures sous le verrou de l'objet, lecture du total sans verrou
+    private static class UserCounters {
+        private final Map<Long, LongAdder> byDevis = new ConcurrentHashMap<>();
+        private final LongAdder total = new LongAdder();
+        private long version;
+
+        synchronized void add(Long devisId, long count) {
+            byDevis.computeIfAbsent(devisId, id -> new LongAdder()).add(count);
+            total.add(count);
+            version++;
+        }
+
+        synchronized long clear(Long devisId) {
+            version++;
+            LongAdder counter = byDevis.remove(devisId);
+            if (counter == null) {
+                return 0;
+            }
+            long count = counter.sum();
+            total.add(-count);
+            return count;
+        }
+
+        synchronized long version() {
+            return version;
+        }
+
+        /**
+         * Applique l'écart avec les comptes lus en base, si aucun événement n'est arrivé
+         * depuis {@code readVersion} ; vrai si le total a changé.
+         */
+        synchronized boolean reconcile(long readVersion, Map<Long, Long> counts) {
+            if (version != readVersion) {
+                return false;
+            }
+            long delta = 0;
+            for (Map.Entry<Long, LongAdder> entry : byDevis.entrySet()) {
+                if (!counts.containsKey(entry.getKey())) {
+                    delta -= entry.getValue().sum();
+                    byDevis.remove(entry.getKey());
+                }
+            }
+            for (Map.Entry<Long, Long> entry : counts.entrySet()) {
+                LongAdder counter = byDevis.computeIfAbsent(entry.getKey(), id -> new LongAdder());
+                long diff = entry.getValue() - counter.sum();
+                counter.add(diff);
+                delta += diff;
+            }
+            total.add(delta);
+            return delta != 0;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.Sofimed.Service;
+
+import com.Sofimed.Dao.ParticipantDao;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Authentification des connexions STOMP et autorisation des abonnements.
+ *
+ * Un jeton (JWT HS256 signé avec {@code jwt.secret}) n'est vérifié qu'une fois : le
+ * principal obtenu est gardé dans un cache borné jusqu'à l'expiration du jeton, si bien
+ * qu'une reconnexion ne coûte qu'une lecture de cache. Les participants d'un devis
+ * (identifiants d'utilisateurs du client et du commercial) sont mis en cache de la même
+ * façon, et chaque abonnement se décide par une recherche de préfixe dans une table puis
+ * une comparaison d'identifiants.
+ *
+ * Les clients n'envoient rien directement sur un topic : une notification passe par
+ * /app/notifications/{userId} et n'est relayée que si l'expéditeur peut joindre ce
+ * destinataire ({@link #canNotify}).
+ */
+@Service
+public class WebSocketAuthService {
+
+    private static final Logger logger = LoggerFactory.getLogger(WebSocketAuthService.class);
+
+    private static final long[] NO_PARTICIPANTS = new long[0];
+
+    private enum Scope { USER, DEVIS }
+
+    // Préfixe de destination -> portée de l'identifiant final
+    private static final Map<String, Scope> TOPIC_SCOPES = Map.of(
+        "/topic/notifications/", Scope.USER,
+        "/topic/devis/updates/", Scope.USER,
+        "/topic/messages/unread/", Scope.USER,
+        // Salon d'un devis et messages adressés à un utilisateur : espaces distincts
+        "/topic/messages/devis/", Scope.DEVIS,
+        "/topic/messages/user/", Scope.USER,
+        "/topic/predictions/", Scope.DEVIS
+    );
+
+    private final ObjectMapper objectMapper;
+    private final ParticipantDao participantDao;
+    private final byte[] secret;
+    private final Cache<String, WebSocketPrincipal> principals;
+    private final LoadingCache<Long, long[]> participantsByDevis;
+    // "expéditeur:destinataire" -> notification autorisée
+    private final LoadingCache<String, Boolean> notifyDecisions;
+
+    public WebSocketAuthService(ObjectMapper objectMapper,
+                                ParticipantDao participantDao,
+                                MeterRegistry meterRegistry,
+                                @Value("${jwt.secret}") String secret,
+                                @Value("${websocket.auth.cache.max-size:50000}") long maxTokens,
+                                @Value("${websocket.auth.cache.max-ttl-minutes:60}") long maxTtlMinutes,
+                                @Value("${websocket.auth.devis-cache.ttl-minutes:10}") long devisTtlMinutes) {
+        this.objectMapper = objectMapper;
+        this.participantDao = participantDao;
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+
+        long maxTtlNanos = TimeUnit.MINUTES.toNanos(maxTtlMinutes);
+        this.principals = Caffeine.newBuilder()
+            .maximumSize(maxTokens)
+            // Entrée conservée jusqu'à l'expiration du jeton, dans la limite de max-ttl
+            .expireAfter(new Expiry<String, WebSocketPrincipal>() {
+                @Override
+                public long expireAfterCreate(String token, WebSocketPrincipal principal, long currentTime) {
+                    long remaining = TimeUnit.SECONDS.toNanos(principal.expiresAtEpochSecond()
+                        - System.currentTimeMillis() / 1000);
+                    return Math.max(0, Math.min(remaining, maxTtlNanos));
+                }
+
+                @Override
+                public long expireAfterUpdate(String token, WebSocketPrincipal principal,
+                                              long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+
+                @Override
+                public long expireAfterRead(String token, WebSocketPrincipal principal,
+                                            long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .recordStats()
+            .build();
+        this.participantsByDevis = Caffeine.newBuilder()
+            .maximumSize(maxTokens)
+            .expireAfterWrite(Duration.ofMinutes(devisTtlMinutes))
+            .build(this::loadParticipants);
+        this.notifyDecisions = Caffeine.newBuilder()
+            .maximumSize(maxTokens)
+            .expireAfterWrite(Duration.ofMinutes(devisTtlMinutes))
+            .build(this::loadNotifyDecision);
+
+        CaffeineCacheMetrics.monitor(meterRegistry, principals, "websocket.auth.tokens");
+    }
+
+    /**
+     * Principal associé au jeton, ou {@code null} si le jeton est absent, invalide ou expiré.
+     */
+    public WebSocketPrincipal authenticate(String authorization) {
+        if (authorization == null || authorization.isBlank()) {
+            return null;
+        }
+        String token = authorization.startsWith("Bearer ") ? authorization.substring(7).trim() : authorization.trim();
+        // Le chargeur renvoie null pour un jeton refusé : rien n'est mis en cache
+        return principals.get(token, this::verify);
+    }
+
+    public boolean canSubscribe(WebSocketPrincipal principal, String destination) {
+        if (principal == null || destination == null) {
+            return false;
+        }
+        if (principal.isAdmin() || destination.startsWith("/user/")) {
+            return true;
+        }
+
+        int lastSlash = destination.lastIndexOf('/');
+        Scope scope = TOPIC_SCOPES.get(destination.substring(0, lastSlash + 1));
+        if (scope == null) {
+            return false;
+        }
+        long id;
+        try {
+            id = Long.parseLong(destination.substring(lastSlash + 1));
+        } catch (NumberFormatException e) {
+            return false;
+        }
+
+        boolean self = principal.userId() != null && principal.userId() == id;
+        return switch (scope) {
+            case USER -> self;
+            case DEVIS -> isParticipant(principal, id);
+        };
+    }
+
+    // Seules les destinations applicatives sont acceptées ; la cible est vérifiée par le contrôleur
+    public boolean canSend(WebSocketPrincipal principal, String destination) {
+        return principal != null && destination != null && destination.startsWith("/app/");
+    }
+
+    /**
+     * Un utilisateur peut notifier lui-même, un administrateur, ou l'autre interlocuteur
+     * d'un devis qu'ils partagent ; un administrateur peut notifier tout le monde.
+     */
+    public boolean canNotify(WebSocketPrincipal principal, long targetUserId) {
+        if (principal == null) {
+            return false;
+        }
+        if (principal.isAdmin()) {
+            return true;
+        }
+        if (principal.userId() == null) {
+            return false;
+        }
+        return principal.userId() == targetUserId
+            || notifyDecisions.get(principal.userId() + ":" + targetUserId);
+    }
+
+    private Boolean loadNotifyDecision(String key) {
+        int separator = key.indexOf(':');
+        Long senderId = Long.valueOf(key.substring(0, separator));
+        Long targetId = Long.valueOf(key.substring(separator + 1));
+        boolean targetIsAdmin = participantDao.findRole(targetId)
+            .map(role -> "ADMIN".equalsIgnoreCase(role) || "ROLE_ADMIN".equalsIgnoreCase(role))
+            .orElse(false);
+        return targetIsAdmin || participantDao.shareDevis(senderId, targetId);
+    }
+
+    private boolean isParticipant(WebSocketPrincipal principal, long devisId) {
+        if (principal.userId() == null) {
+            return false;
+        }
+        for (long participant : participantsByDevis.get(devisId)) {
+            if (participant == principal.userId()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Identifiants d'utilisateurs, comparables à celui du jeton
+    private long[] loadParticipants(Long devisId) {
+        return participantDao.findUserIds(devisId).orElse(NO_PARTICIPANTS);
+    }
+
+    private WebSocketPrincipal verify(String token) {
+        try {
+            String[] parts = token.split("\\.");
+            if (parts.length != 3) {
+                return null;
+            }
+
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+            byte[] expected = mac.doFinal((parts[0] + "." + parts[1]).getBytes(StandardCharsets.US_ASCII));
+            if (!MessageDigest.isEqual(expected, Base64.getUrlDecoder().decode(parts[2]))) {
+                return null;
+            }
+
+            JsonNode claims = objectMapper.readTree(Base64.getUrlDecoder().decode(parts[1]));
+            long expiresAt = claims.path("exp").asLong(0);
+            if (expiresAt <= System.currentTimeMillis() / 1000) {
+                return null;
+            }
+
+            String subject = claims.path("sub").asText(null);
+            JsonNode id = claims.hasNonNull("userId") ? claims.get("userId") : claims.get("id");
+            Long userId = id != null && id.canConvertToLong() ? id.asLong() : userIdOf(subject);
+            return new WebSocketPrincipal(userId, subject, claims.path("role").asText(""), expiresAt);
+        } catch (GeneralSecurityException | IllegalArgumentException | IOException e) {
+            logger.debug("Jeton WebSocket refusé: {}", e.getMessage());
+            return null;
+        } catch (RuntimeException e) {
+            // Base indisponible : connexion refusée, rien n'est mis en cache
+            logger.warn("Vérification du jeton WebSocket impossible: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    // Jeton sans identifiant numérique : utilisateur retrouvé par son nom de connexion
+    private Long userIdOf(String subject) {
+        if (subject == null || subject.isBlank()) {
+            return null;
+        }
+        return participantDao.findUserIdByLogin(subject).orElse(null);
+    }
+
+    public record WebSocketPrincipal(Long userId, String username, String role, long expiresAtEpochSecond)
+            implements Principal {
+
+        // Nom utilisé pour résoudre les destinations /user
+        @Override
+        public String getName() {
+            return userId != null ? userId.toString() : username;
+        }
+
+        boolean isAdmin() {
+            return "ADMIN".equalsIgnoreCase(role) || "ROLE_ADMIN".equalsIgnoreCase(role);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.Sofimed.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Envoi groupé des événements WebSocket.
+ *
+ * Chaque charge utile est sérialisée une seule fois à la publication, puis les
+ * événements d'un même topic sont regroupés sur une courte fenêtre
+ * ({@code websocket.dispatch.window-ms}) et partent en une seule trame : un événement
+ * seul est envoyé tel quel, plusieurs le sont sous forme de tableau JSON.
+ * {@link #publishLatest} ne garde que la dernière valeur d'un topic (compteurs).
+ *
+ * Au-delà de {@code websocket.dispatch.max-pending} événements en attente, les
+ * nouveaux sont abandonnés et comptés plutôt que d'accumuler de la mémoire.
+ */
+@Service
+public class WebSocketDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(WebSocketDispatcher.class);
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper;
+    private final long windowMs;
+    private final int maxPending;
+    private final int maxBatch;
+
+    // Événements en attente par topic ; la file est remplacée à chaque vidage
+    private final Map<String, ArrayDeque<byte[]>> pendingByTopic = new ConcurrentHashMap<>();
+    // Dernière valeur en attente des topics à écrasement
+    private final Map<String, byte[]> latestByTopic = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final Counter publishedCounter;
+    private final Counter framesCounter;
+    private final Counter droppedCounter;
+    private final Counter coalescedCounter;
+
+    private ScheduledExecutorService flusher;
+
+    public WebSocketDispatcher(SimpMessagingTemplate messagingTemplate,
+                               ObjectMapper objectMapper,
+                               MeterRegistry meterRegistry,
+                               @Value("${websocket.dispatch.window-ms:5}") long windowMs,
+                               @Value("${websocket.dispatch.max-pending:10000}") int maxPending,
+                               @Value("${websocket.dispatch.max-batch:100}") int maxBatch) {
+        this.messagingTemplate = messagingTemplate;
+        this.objectMapper = objectMapper;
+        this.windowMs = Math.max(1, windowMs);
+        this.maxPending = maxPending;
+        this.maxBatch = Math.max(1, maxBatch);
+
+        Gauge.builder("websocket.dispatch.queue.depth", () -> pending.get() + latestByTopic.size())
+            .description("Événements WebSocket en attente d'envoi")
+            .register(meterRegistry);
+        this.publishedCounter = Counter.builder("websocket.dispatch.events")
+            .description("Événements WebSocket publiés")
+            .register(meterRegistry);
+        this.framesCounter = Counter.builder("websocket.dispatch.frames")
+            .description("Trames WebSocket envoyées après regroupement")
+            .register(meterRegistry);
+        this.droppedCounter = Counter.builder("websocket.dispatch.dropped")
+            .description("Événements WebSocket abandonnés (file pleine ou erreur d'envoi)")
+            .register(meterRegistry);
+        this.coalescedCounter = Counter.builder("websocket.dispatch.coalesced")
+            .description("Valeurs remplacées avant envoi par une plus récente")
+            .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ws-dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushSafely, windowMs, windowMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        flusher.shutdown();
+        flushSafely();
+    }
+
+    /**
+     * Ajoute un événement au prochain envoi du topic.
+     */
+    public void publish(String topic, Object payload) {
+        byte[] body = serialize(topic, payload);
+        if (body == null) {
+            return;
+        }
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            droppedCounter.increment();
+            return;
+        }
+        publishedCounter.increment();
+        pendingByTopic.compute(topic, (key, queue) -> {
+            ArrayDeque<byte[]> events = queue != null ? queue : new ArrayDeque<>();
+            events.add(body);
+            return events;
+        });
+    }
+
+    /**
+     * Remplace la valeur en attente du topic : seule la plus récente est envoyée.
+     */
+    public void publishLatest(String topic, Object payload) {
+        byte[] body = serialize(topic, payload);
+        if (body == null) {
+            return;
+        }
+        publishedCounter.increment();
+        if (latestByTopic.put(topic, body) != null) {
+            coalescedCounter.increment();
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.error("Erreur lors de l'envoi groupé WebSocket", e);
+        }
+    }
+
+    private void flush() {
+        for (String topic : latestByTopic.keySet()) {
+            byte[] body = latestByTopic.remove(topic);
+            if (body != null) {
+                send(topic, body, 1);
+            }
+        }
+
+        for (String topic : pendingByTopic.keySet()) {
+            ArrayDeque<byte[]> events = pendingByTopic.remove(topic);
+            if (events == null) {
+                continue;
+            }
+            pending.addAndGet(-events.size());
+            while (!events.isEmpty()) {
+                int size = Math.min(events.size(), maxBatch);
+                if (size == 1) {
+                    send(topic, events.poll(), 1);
+                } else {
+                    send(topic, toJsonArray(events, size), size);
+                }
+            }
+        }
+    }
+
+    // Concatène des charges déjà sérialisées en tableau JSON, sans re-sérialisation
+    private static byte[] toJsonArray(ArrayDeque<byte[]> events, int size) {
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        frame.write('[');
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                frame.write(',');
+            }
+            frame.writeBytes(events.poll());
+        }
+        frame.write(']');
+        return frame.toByteArray();
+    }
+
+    private void send(String topic, byte[] body, int events) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        headers.setNativeHeader("x-batch-size", String.valueOf(events));
+        headers.setLeaveMutable(true);
+        Message<byte[]> message = MessageBuilder.createMessage(body, headers.getMessageHeaders());
+        try {
+            messagingTemplate.send(topic, message);
+            framesCounter.increment();
+        } catch (Exception e) {
+            droppedCounter.increment(events);
+            logger.warn("Trame WebSocket abandonnée pour {}: {}", topic, e.getMessage());
+        }
+    }
+
+    private byte[] serialize(String topic, Object payload) {
+        try {
+            return objectMapper.writeValueAsBytes(payload);
+        } catch (JsonProcessingException e) {
+            droppedCounter.increment();
+            logger.error("Sérialisation impossible pour {}: {}", topic, e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.Sofimed.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sessions STOMP ouvertes sur ce nœud, et connexions/déconnexions cumulées.
+ *
+ * Une déconnexion peut être publiée plusieurs fois pour une même session, ou pour un
+ * CONNECT refusé : seules les sessions effectivement connectées sont décomptées.
+ */
+@Service
+public class WebSocketSessionMetrics {
+
+    private final Set<String> openSessions = ConcurrentHashMap.newKeySet();
+    private final Counter connected;
+    private final Counter disconnected;
+
+    public WebSocketSessionMetrics(MeterRegistry meterRegistry) {
+        Gauge.builder("websocket.sessions.active", openSessions, Set::size)
+            .description("Sessions WebSocket ouvertes")
+            .register(meterRegistry);
+        this.connected = Counter.builder("websocket.sessions.connected")
+            .description("Connexions WebSocket établies")
+            .register(meterRegistry);
+        this.disconnected = Counter.builder("websocket.sessions.disconnected")
+            .description("Connexions WebSocket fermées")
+            .register(meterRegistry);
+    }
+
+    @EventListener
+    public void onConnected(SessionConnectedEvent event) {
+        String sessionId = StompHeaderAccessor.wrap(event.getMessage()).getSessionId();
+        if (sessionId != null && openSessions.add(sessionId)) {
+            connected.increment();
+        }
+    }
+
+    @EventListener
+    public void onDisconnected(SessionDisconnectEvent event) {
+        if (openSessions.remove(event.getSessionId())) {
+            disconnected.increment();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.Sofimed.Config;
+
+import com.Sofimed.Service.CartWriteBuffer;
+import com.Sofimed.Service.CartWriteBuffer.IncompleteCartException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Vide le tampon d'écriture des paniers avant les requêtes qui lisent les articles
+ * ou valident une commande, pour qu'elles voient toujours les dernières modifications.
+ * Seul le panier concerné par la requête est vidé ; pour la validation d'une commande,
+ * le devis est lu dans le corps de la requête, conservé pour le contrôleur.
+ *
+ * Un échec de vidage avant une lecture est journalisé sans bloquer la requête. Avant
+ * une validation de commande, il la refuse : 409 si des articles ont été écartés du
+ * tampon, 503 si l'écriture peut être retentée.
+ */
+@Configuration
+public class CartWriteConfig implements WebMvcConfigurer {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartWriteConfig.class);
+
+    private static final String CARTS_PREFIX = "/api/carts/";
+    private static final String DEVIS_PREFIX = "/api/devis/";
+    private static final String CHECKOUT_PATH = "/api/commandes/save";
+    // Segments précédant l'identifiant d'un devis : /api/devis/id/{id}, /api/devis/download/{id}
+    private static final Set<String> DEVIS_ID_SEGMENTS = Set.of("id", "download");
+
+    @Autowired
+    private CartWriteBuffer cartWriteBuffer;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+                    throws IOException {
+                String path = request.getRequestURI().substring(request.getContextPath().length());
+                if (path.equals(CHECKOUT_PATH)) {
+                    return flushForCheckout(request, response);
+                }
+                try {
+                    if (path.startsWith(CARTS_PREFIX)) {
+                        Long cartId = idOf(path.substring(CARTS_PREFIX.length()).split("/"), 0);
+                        if (cartId != null) {
+                            cartWriteBuffer.flush(cartId);
+                        }
+                    } else if (path.startsWith(DEVIS_PREFIX)) {
+                        Long devisId = devisIdOf(path);
+                        if (devisId != null) {
+                            cartWriteBuffer.flushDevis(devisId);
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    // Les modifications restent en tampon : la requête lit l'état déjà écrit
+                    logger.error("Vidage du tampon de panier impossible avant {}", path, e);
+                }
+                return true;
+            }
+        }).addPathPatterns("/api/carts/**", "/api/devis/**", CHECKOUT_PATH);
+    }
+
+    // Corps de la validation de commande mis en mémoire : lu par l'intercepteur, puis par le contrôleur
+    @Bean
+    public FilterRegistrationBean<OncePerRequestFilter> checkoutBodyFilter() {
+        FilterRegistrationBean<OncePerRequestFilter> registration = new FilterRegistrationBean<>(new OncePerRequestFilter() {
+            @Override
+            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+                    throws ServletException, IOException {
+                chain.doFilter(new CachedBodyRequest(request), response);
+            }
+        });
+        registration.addUrlPatterns(CHECKOUT_PATH);
+        return registration;
+    }
+
+    private boolean flushForCheckout(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Long devisId = devisIdOfBody(StreamUtils.copyToByteArray(request.getInputStream()));
+        if (devisId == null) {
+            // Corps invalide : le contrôleur répond
+            return true;
+        }
+        try {
+            cartWriteBuffer.flushForCheckout(devisId);
+            return true;
+        } catch (IncompleteCartException e) {
+            logger.warn("Validation du devis {} refusée: {}", devisId, e.getMessage());
+            reject(response, HttpStatus.CONFLICT, e.getMessage());
+        } catch (RuntimeException e) {
+            logger.error("Vidage du panier du devis {} impossible avant validation", devisId, e);
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE, "Panier en cours d'enregistrement, veuillez réessayer");
+        }
+        return false;
+    }
+
+    private void reject(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        objectMapper.writeValue(response.getOutputStream(), Map.of("error", message));
+    }
+
+    // { "devis": { "id": ... } } ; null si le corps n'est pas lisible
+    private Long devisIdOfBody(byte[] body) {
+        try {
+            JsonNode id = objectMapper.readTree(body).path("devis").path("id");
+            return id.canConvertToLong() ? id.asLong() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // /api/devis/{id}/..., /api/devis/id/{id} ; null pour les listes (client, commercial...)
+    private static Long devisIdOf(String path) {
+        String[] segments = path.substring(DEVIS_PREFIX.length()).split("/");
+        Long devisId = idOf(segments, 0);
+        if (devisId == null && DEVIS_ID_SEGMENTS.contains(segments[0])) {
+            devisId = idOf(segments, 1);
+        }
+        return devisId;
+    }
+
+    private static Long idOf(String[] segments, int index) {
+        if (segments.length <= index) {
+            return null;
+        }
+        try {
+            return Long.valueOf(segments[index]);
+        } catch (NumberFormatException e) {
+            // /api/carts/current/{userId} : panier inconnu à ce stade
+            return null;
+        }
+    }
+
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request) throws IOException {
+            super(request);
+            this.body = StreamUtils.copyToByteArray(request.getInputStream());
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding() != null ? getCharacterEncoding() : StandardCharsets.UTF_8.name();
+            return new BufferedReader(new InputStreamReader(getInputStream(), Charset.forName(encoding)));
+        }
+    }
+}
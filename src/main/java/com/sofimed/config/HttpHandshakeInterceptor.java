@@ -5,21 +5,38 @@ import org.springframework.http.server.ServerHttpResponse;
 import org.springframework.http.server.ServletServerHttpRequest;
 import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.server.HandshakeInterceptor;
-import org.springframework.web.util.WebUtils;
 
 import javax.servlet.http.HttpSession;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
 import java.util.Map;
+import java.util.UUID;
 
 public class HttpHandshakeInterceptor implements HandshakeInterceptor {
 
+    private final String nodeId;
+
+    public HttpHandshakeInterceptor() {
+        this(null);
+    }
+
+    public HttpHandshakeInterceptor(String nodeId) {
+        this.nodeId = nodeId != null && !nodeId.isBlank() ? nodeId : defaultNodeId();
+    }
+
     @Override
     public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
             WebSocketHandler wsHandler, Map<String, Object> attributes) throws Exception {
+        // Identifiant unique dans tout le cluster, indépendant de la session HTTP du nœud
+        attributes.put("sessionId", nodeId + ":" + UUID.randomUUID());
+        attributes.put("nodeId", nodeId);
+
         if (request instanceof ServletServerHttpRequest) {
             ServletServerHttpRequest servletRequest = (ServletServerHttpRequest) request;
-            HttpSession session = WebUtils.getSession(servletRequest.getServletRequest());
+            // Session HTTP existante uniquement, sans en créer une
+            HttpSession session = servletRequest.getServletRequest().getSession(false);
             if (session != null) {
-                attributes.put("sessionId", session.getId());
+                attributes.put("httpSessionId", session.getId());
             }
         }
         return true;
@@ -30,4 +47,12 @@ public class HttpHandshakeInterceptor implements HandshakeInterceptor {
             WebSocketHandler wsHandler, Exception exception) {
         // Nothing to do after handshake
     }
-} 
\ No newline at end of file
+
+    private static String defaultNodeId() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return UUID.randomUUID().toString().substring(0, 8);
+        }
+    }
+}
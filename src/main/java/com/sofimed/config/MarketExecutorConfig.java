@@ -0,0 +1,22 @@
+package com.Sofimed.Config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Configuration
+public class MarketExecutorConfig {
+
+    // Recherches d'offres et taux de change : appels HTTP bloquants hors des threads Tomcat.
+    // Threads virtuels quand la JVM les fournit (Java 21+), pool extensible sinon.
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService marketLookupExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.Sofimed.Config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
+import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
+import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
+import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+
+/**
+ * Messagerie STOMP sur /ws.
+ *
+ * Deux modes selon {@code websocket.broker.mode} :
+ * <ul>
+ *   <li>{@code simple} (défaut) : broker en mémoire, une seule instance de l'application ;</li>
+ *   <li>{@code relay} : les destinations /topic et /queue sont relayées vers un broker STOMP
+ *       externe (RabbitMQ avec le plugin STOMP, ActiveMQ/Artemis). Chaque instance ne garde
+ *       que ses propres connexions ; un message publié par un nœud atteint les abonnés de
+ *       tous les nœuds, et les destinations /user sont résolues à travers le cluster.</li>
+ * </ul>
+ *
+ * Un client trop lent (envoi bloqué plus de {@code websocket.send-time-limit-ms} ou
+ * tampon de sortie au-delà de {@code websocket.send-buffer-limit-bytes}) est déconnecté
+ * au lieu de retenir les threads d'envoi des autres sessions.
+ */
+@Configuration
+@EnableWebSocketMessageBroker
+public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+
+    // Heartbeats attendus par le front (heartbeatIncoming/Outgoing à 10 s)
+    private static final long[] HEARTBEAT = {10000, 10000};
+
+    @Value("${websocket.broker.mode:simple}")
+    private String brokerMode;
+
+    @Value("${websocket.broker.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${websocket.broker.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${websocket.broker.relay.login:guest}")
+    private String relayLogin;
+
+    @Value("${websocket.broker.relay.passcode:guest}")
+    private String relayPasscode;
+
+    @Value("${websocket.broker.relay.virtual-host:}")
+    private String relayVirtualHost;
+
+    @Value("${websocket.node-id:}")
+    private String nodeId;
+
+    @Value("${websocket.send-time-limit-ms:10000}")
+    private int sendTimeLimitMs;
+
+    @Value("${websocket.send-buffer-limit-bytes:524288}")
+    private int sendBufferLimitBytes;
+
+    @Value("${websocket.outbound.threads:8}")
+    private int outboundThreads;
+
+    @Override
+    public void registerStompEndpoints(StompEndpointRegistry registry) {
+        registry.addEndpoint("/ws")
+            .setAllowedOrigins("http://localhost:3000")
+            .addInterceptors(new HttpHandshakeInterceptor(nodeId))
+            .withSockJS();
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendTimeLimit(sendTimeLimitMs)
+            .setSendBufferSizeLimit(sendBufferLimitBytes);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.taskExecutor()
+            .corePoolSize(outboundThreads)
+            .maxPoolSize(outboundThreads);
+    }
+
+    @Override
+    public void configureMessageBroker(MessageBrokerRegistry registry) {
+        registry.setApplicationDestinationPrefixes("/app");
+        registry.setUserDestinationPrefix("/user");
+
+        if ("relay".equalsIgnoreCase(brokerMode)) {
+            var relay = registry.enableStompBrokerRelay("/topic", "/queue")
+                .setRelayHost(relayHost)
+                .setRelayPort(relayPort)
+                .setClientLogin(relayLogin)
+                .setClientPasscode(relayPasscode)
+                .setSystemLogin(relayLogin)
+                .setSystemPasscode(relayPasscode)
+                .setSystemHeartbeatSendInterval(HEARTBEAT[0])
+                .setSystemHeartbeatReceiveInterval(HEARTBEAT[1])
+                // Partage des sessions /user entre les instances
+                .setUserDestinationBroadcast("/topic/unresolved-user-destination")
+                .setUserRegistryBroadcast("/topic/simp-user-registry");
+            if (!relayVirtualHost.isEmpty()) {
+                relay.setVirtualHost(relayVirtualHost);
+            }
+        } else {
+            registry.enableSimpleBroker("/topic", "/queue")
+                .setHeartbeatValue(HEARTBEAT)
+                .setTaskScheduler(wsHeartbeatScheduler());
+        }
+    }
+
+    // Heartbeats du broker simple ; bean géré par le contexte, arrêté avec lui
+    @Bean
+    public ThreadPoolTaskScheduler wsHeartbeatScheduler() {
+        ThreadPoolTaskScheduler heartbeatScheduler = new ThreadPoolTaskScheduler();
+        heartbeatScheduler.setPoolSize(1);
+        heartbeatScheduler.setThreadNamePrefix("ws-heartbeat-");
+        return heartbeatScheduler;
+    }
+}
@@ -1 +1,69 @@
- 
\ No newline at end of file
+package com.Sofimed.Config;
+
+import com.Sofimed.Service.WebSocketAuthService;
+import com.Sofimed.Service.WebSocketAuthService.WebSocketPrincipal;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.config.ChannelRegistration;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+
+/**
+ * Sécurité de la messagerie STOMP, sans session HTTP.
+ *
+ * Le jeton est lu dans l'en-tête {@code Authorization} de la trame CONNECT (déjà envoyé
+ * par le front) et le principal est attaché à la session WebSocket ; chaque SUBSCRIBE
+ * et SEND est ensuite autorisé à partir de ce principal, sans nouvel accès au jeton.
+ */
+@Configuration
+@Order(Ordered.HIGHEST_PRECEDENCE + 99)
+public class WebSocketSecurityConfig implements WebSocketMessageBrokerConfigurer {
+
+    @Autowired
+    private WebSocketAuthService webSocketAuthService;
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(new ChannelInterceptor() {
+            @Override
+            public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+                if (accessor == null || accessor.getCommand() == null) {
+                    return message;
+                }
+
+                StompCommand command = accessor.getCommand();
+                if (command == StompCommand.CONNECT) {
+                    WebSocketPrincipal principal =
+                        webSocketAuthService.authenticate(accessor.getFirstNativeHeader("Authorization"));
+                    if (principal == null) {
+                        throw new MessageDeliveryException(message, "Jeton d'authentification invalide ou expiré");
+                    }
+                    accessor.setUser(principal);
+                } else if (command == StompCommand.SUBSCRIBE) {
+                    if (!webSocketAuthService.canSubscribe(principalOf(accessor), accessor.getDestination())) {
+                        throw new MessageDeliveryException(message, "Abonnement non autorisé: " + accessor.getDestination());
+                    }
+                } else if (command == StompCommand.SEND) {
+                    if (!webSocketAuthService.canSend(principalOf(accessor), accessor.getDestination())) {
+                        throw new MessageDeliveryException(message, "Envoi non autorisé: " + accessor.getDestination());
+                    }
+                }
+                return message;
+            }
+        });
+    }
+
+    private static WebSocketPrincipal principalOf(StompHeaderAccessor accessor) {
+        return accessor.getUser() instanceof WebSocketPrincipal principal ? principal : null;
+    }
+}
@@ -1,6 +1,12 @@
 import SockJS from 'sockjs-client';
 import { Client } from '@stomp/stompjs';
 
+// Le serveur regroupe les événements rapprochés d'un même topic dans un tableau JSON
+const parseEvents = (body) => {
+  const payload = JSON.parse(body);
+  return Array.isArray(payload) ? payload : [payload];
+};
+
 class NotificationService {
   constructor() {
     this.stompClient = null;
@@ -44,8 +50,9 @@ class NotificationService {
             `/topic/notifications/${userId}`, 
             (notification) => {
               console.log('📬 Notification reçue:', notification.body);
-              const notificationData = JSON.parse(notification.body);
-              onNotificationReceived(notificationData);
+              parseEvents(notification.body).forEach((notificationData) => {
+                onNotificationReceived(notificationData);
+              });
             },
             { 'Authorization': `Bearer ${token}` }
           );
@@ -55,12 +62,13 @@ class NotificationService {
             `/topic/devis/updates/${userId}`, 
             (update) => {
               console.log('📝 Mise à jour devis reçue:', update.body);
-              const updateData = JSON.parse(update.body);
-              onNotificationReceived({
-                type: 'devis_update',
-                title: 'Mise à jour de devis',
-                message: `Le devis ${updateData.reference} a été mis à jour`,
-                data: updateData
+              parseEvents(update.body).forEach((updateData) => {
+                onNotificationReceived({
+                  type: 'devis_update',
+                  title: 'Mise à jour de devis',
+                  message: `Le devis ${updateData.reference} a été mis à jour`,
+                  data: updateData
+                });
               });
             },
             { 'Authorization': `Bearer ${token}` }
@@ -68,15 +76,16 @@ class NotificationService {
           
           // S'abonner aux nouveaux messages
           const messageSub = this.stompClient.subscribe(
-            `/topic/messages/${userId}`, 
+            `/topic/messages/user/${userId}`, 
             (message) => {
               console.log('💬 Nouveau message reçu:', message.body);
-              const messageData = JSON.parse(message.body);
-              onNotificationReceived({
-                type: 'new_message',
-                title: 'Nouveau message',
-                message: `Nouveau message de ${messageData.senderName}`,
-                data: messageData
+              parseEvents(message.body).forEach((messageData) => {
+                onNotificationReceived({
+                  type: 'new_message',
+                  title: 'Nouveau message',
+                  message: `Nouveau message de ${messageData.senderName}`,
+                  data: messageData
+                });
               });
             },
             { 'Authorization': `Bearer ${token}` }
@@ -150,8 +159,9 @@ class NotificationService {
       console.log('📤 Envoi notification vers:', destination, notification);
       const token = localStorage.getItem('token');
       try {
+        // Le serveur vérifie le destinataire puis relaie sur /topic/notifications/{userId}
         this.stompClient.publish({
-          destination: destination,
+          destination: destination.replace(/^\/topic\/notifications\//, '/app/notifications/'),
           headers: { 'Authorization': `Bearer ${token}` },
           body: JSON.stringify(notification)
         });
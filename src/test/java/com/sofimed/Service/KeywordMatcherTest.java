@@ -0,0 +1,41 @@
+package com.Sofimed.Service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class KeywordMatcherTest {
+
+    private static final KeywordMatcher MATCHER = new KeywordMatcher(List.of(
+        List.of("bon", "merci"),
+        List.of("cher", "pas cher"),
+        List.of("réduction")
+    ));
+
+    @Test
+    void neComptePasUnMotClePrisDansUnAutreMot() {
+        assertArrayEquals(new int[] {0, 0, 0}, count("Bonjour, je cherche un fournisseur"));
+        assertArrayEquals(new int[] {0, 0, 0}, count("bonne journée, archer"));
+    }
+
+    @Test
+    void compteLesMotsEntiersQuelleQueSoitLaPonctuation() {
+        assertArrayEquals(new int[] {2, 1, 0}, count("Bon. C'est cher, merci"));
+        assertArrayEquals(new int[] {1, 0, 0}, count("bon"));
+        assertArrayEquals(new int[] {2, 0, 0}, count("bon bon"));
+    }
+
+    @Test
+    void ignoreLaCasseLesAccentsEtLesSeparateursMultiples() {
+        assertArrayEquals(new int[] {0, 0, 1}, count("Une RÉDUCTION ?"));
+        assertArrayEquals(new int[] {0, 2, 0}, count("Ce n'est pas   cher"));
+    }
+
+    private static int[] count(String text) {
+        int[] counts = new int[MATCHER.categoryCount()];
+        MATCHER.count(text, counts);
+        return counts;
+    }
+}
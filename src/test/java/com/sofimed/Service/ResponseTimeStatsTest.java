@@ -0,0 +1,54 @@
+package com.Sofimed.Service;
+
+import com.Sofimed.Dao.MessageCursorDao.MessageTiming;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ResponseTimeStatsTest {
+
+    private static final long DEVIS_ID = 10L;
+    private static final long CLIENT_ID = 3L;
+    private static final long COMMERCIAL_ID = 4L;
+    // Identifiants d'utilisateurs volontairement différents de ceux des entités
+    private static final long CLIENT_USER_ID = 103L;
+    private static final long COMMERCIAL_USER_ID = 104L;
+
+    private final LocalDateTime start = LocalDateTime.of(2024, 1, 15, 9, 0);
+
+    @Test
+    void attribueLeDelaiAuCommercialEtAuClientParIdentifiantUtilisateur() {
+        ResponseTimeStats stats = new ResponseTimeStats(null, null);
+
+        stats.record(timing(1L, CLIENT_USER_ID, start));
+        stats.record(timing(2L, COMMERCIAL_USER_ID, start.plusMinutes(30)));
+        stats.record(timing(3L, CLIENT_USER_ID, start.plusMinutes(90)));
+
+        assertEquals(2L, stats.forDevis(DEVIS_ID).get("count"));
+        assertEquals(1L, stats.forCommercial(COMMERCIAL_ID).get("count"));
+        assertEquals(30.0, (double) stats.forCommercial(COMMERCIAL_ID).get("moyenneMinutes"), 1e-9);
+        assertEquals(1L, stats.forClient(CLIENT_ID).get("count"));
+        assertEquals(60.0, (double) stats.forClient(CLIENT_ID).get("moyenneMinutes"), 1e-9);
+    }
+
+    @Test
+    void ignoreUnExpediteurEgalAUnIdentifiantDEntite() {
+        ResponseTimeStats stats = new ResponseTimeStats(null, null);
+
+        stats.record(timing(1L, CLIENT_USER_ID, start));
+        // L'identifiant de l'entité Commercial n'est pas celui de son utilisateur
+        stats.record(timing(2L, COMMERCIAL_ID, start.plusMinutes(30)));
+
+        assertEquals(1L, stats.forDevis(DEVIS_ID).get("count"));
+        assertEquals(0L, stats.forCommercial(COMMERCIAL_ID).get("count"));
+        assertEquals(0L, stats.forClient(CLIENT_ID).get("count"));
+    }
+
+    private static MessageTiming timing(long id, long senderId, LocalDateTime timestamp) {
+        return new MessageTiming(id, DEVIS_ID, senderId, timestamp,
+            CLIENT_ID, COMMERCIAL_ID, CLIENT_USER_ID, COMMERCIAL_USER_ID);
+    }
+}